@@ -0,0 +1,123 @@
+package com.minepay.plugin.bukkit.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.stream.JsonReader;
+
+import com.minepay.plugin.bukkit.storefront.Category;
+import com.minepay.plugin.bukkit.storefront.MaterialResolver;
+import com.minepay.plugin.bukkit.storefront.Package;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Compares the streaming decoding of category responses with the previous json-simple based
+ * decoding.
+ *
+ * Both benchmarks decode the same UTF-8 encoded response body into a category and its packages.
+ * The json-simple path parses the entire document into a tree before the category is constructed
+ * from it (as the removed {@code JSONObject} based constructors did). Run with {@code -prof gc} in
+ * order to compare allocation rates.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class CatalogDecodingBenchmark {
+    @Param({"10", "100", "1000"})
+    public int packages;
+
+    private byte[] response;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("{\"id\":1,\"name\":\"Ranks\",\"description\":\"Permanent ranks and perks\",\"guiItem\":\"diamond\",\"packages\":[");
+
+        for (int i = 0; i < this.packages; ++i) {
+            if (i != 0) {
+                builder.append(',');
+            }
+
+            builder.append("{\"id\":").append(i + 1)
+                    .append(",\"name\":\"Package #").append(i + 1)
+                    .append("\",\"description\":\"Grants access to perk #").append(i + 1)
+                    .append("\",\"guiItem\":\"emerald\",\"price\":").append(i % 100).append(".99}");
+        }
+
+        builder.append("]}");
+        this.response = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Category jsonReader() throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(this.response), StandardCharsets.UTF_8))) {
+            return Category.decode(reader);
+        }
+    }
+
+    @Benchmark
+    public Category jsonSimple() throws IOException, ParseException {
+        try (InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(this.response), StandardCharsets.UTF_8)) {
+            return decodeCategory((JSONObject) new JSONParser().parse(reader));
+        }
+    }
+
+    /**
+     * Constructs a category from its json-simple representation.
+     *
+     * @param object an object.
+     * @return a category.
+     */
+    @Nonnull
+    private static Category decodeCategory(@Nonnull JSONObject object) {
+        ImmutableList.Builder<Package> packages = ImmutableList.builder();
+
+        for (Object element : (JSONArray) object.get("packages")) {
+            packages.add(decodePackage((JSONObject) element));
+        }
+
+        return new Category((long) object.get("id"), (String) object.get("name"), (String) object.get("description"), MaterialResolver.resolve((String) object.get("guiItem")), packages.build());
+    }
+
+    /**
+     * Constructs a package from its json-simple representation.
+     *
+     * @param object an object.
+     * @return a package.
+     */
+    @Nonnull
+    private static Package decodePackage(@Nonnull JSONObject object) {
+        // json-simple parses prices as doubles and thus does not retain their literal value
+        BigDecimal price = BigDecimal.valueOf(((Number) object.get("price")).doubleValue());
+
+        return new Package((long) object.get("id"), (String) object.get("name"), (String) object.get("description"), MaterialResolver.resolve((String) object.get("guiItem")), price);
+    }
+}
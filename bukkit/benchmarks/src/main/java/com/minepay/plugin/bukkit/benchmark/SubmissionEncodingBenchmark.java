@@ -0,0 +1,77 @@
+package com.minepay.plugin.bukkit.benchmark;
+
+import com.minepay.plugin.bukkit.telemetry.DataPoint;
+import com.minepay.plugin.bukkit.telemetry.Submission;
+import com.minepay.plugin.bukkit.telemetry.SubmissionEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the encoding of telemetry submissions via json-simple with the streaming encoder.
+ *
+ * Both benchmarks produce the UTF-8 encoded request body which is passed to the telemetry
+ * endpoint. The streaming encoder re-uses its buffer between invocations the same way the
+ * telemetry task does. Run with {@code -prof gc} in order to compare allocation rates.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class SubmissionEncodingBenchmark {
+    @Param({"1000", "5000", "10000"})
+    public int dataPoints;
+
+    private Submission submission;
+    private SubmissionEncoder encoder;
+
+    @Setup
+    public void setup() {
+        Submission.Builder builder = Submission.builder();
+
+        // all value types are mixed evenly since each of them takes a different encoding path
+        for (int i = 0; i < this.dataPoints; ++i) {
+            switch (i % 3) {
+                case 0:
+                    builder.add(DataPoint.createLong("jvm.pool.metric-" + i + ".used", 1073741824L + i * 4096L));
+                    break;
+                case 1:
+                    builder.add(DataPoint.createFloat("jvm.pool.metric-" + i + ".occupancy", i / 7.0f));
+                    break;
+                default:
+                    builder.add(DataPoint.createInteger("jvm.threads.metric-" + i, i));
+            }
+        }
+
+        this.submission = builder.build();
+        this.encoder = new SubmissionEncoder();
+    }
+
+    @Benchmark
+    public byte[] jsonSimple() {
+        return this.submission.toEncodedObject().toJSONString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encoder() {
+        this.encoder.reset();
+        this.encoder.writeSubmission(this.submission);
+        return this.encoder.toByteArray();
+    }
+}
@@ -0,0 +1,100 @@
+package com.minepay.plugin.bukkit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the paths through which the CraftBukkit boilerplates access the NMS tick counter.
+ *
+ * Since no server is available within the benchmark, a stand-in with a private tick counter is
+ * used instead. The benchmarks cover the previous implementation (which invoked a method handle
+ * stored within an instance field via {@link MethodHandle#invoke(Object...)}), the current
+ * implementation (which invokes a bound handle stored within a constant via {@link
+ * MethodHandle#invokeExact(Object...)}) as well as plain reflection. A direct field access is
+ * included as a baseline.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class TickCountAccessBenchmark {
+    private static final MinecraftServer SERVER = new MinecraftServer();
+    private static final MethodHandle TICK_COUNT;
+
+    static {
+        try {
+            TICK_COUNT = MethodHandles.lookup().unreflectGetter(getTickCountField()).bindTo(SERVER).asType(MethodType.methodType(int.class));
+        } catch (IllegalAccessException | NoSuchFieldException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private MinecraftServer server;
+    private MethodHandle handle;
+    private Field field;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        this.server = SERVER;
+        this.field = getTickCountField();
+        this.handle = MethodHandles.lookup().unreflectGetter(this.field);
+    }
+
+    /**
+     * Locates the tick counter of the stand-in server.
+     *
+     * @return a field.
+     *
+     * @throws NoSuchFieldException when the field cannot be located.
+     */
+    private static Field getTickCountField() throws NoSuchFieldException {
+        Field field = MinecraftServer.class.getDeclaredField("ticks");
+        field.setAccessible(true);
+        return field;
+    }
+
+    @Benchmark
+    public int direct() {
+        return this.server.ticks;
+    }
+
+    @Benchmark
+    public int instanceHandleInvoke() throws Throwable {
+        return (int) this.handle.invoke(this.server);
+    }
+
+    @Benchmark
+    public int constantHandleInvokeExact() throws Throwable {
+        return (int) TICK_COUNT.invokeExact();
+    }
+
+    @Benchmark
+    public int reflection() throws IllegalAccessException {
+        return this.field.getInt(this.server);
+    }
+
+    /**
+     * Represents a stand-in for the NMS server class.
+     */
+    private static final class MinecraftServer {
+        private int ticks = 42;
+    }
+}
@@ -18,13 +18,20 @@ import java.lang.reflect.Field;
  * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
  */
 public class CraftBukkitBoilerplateImpl implements CraftBukkitBoilerplate {
-    private final MethodHandle handle;
+    private static final MethodHandle TICK_COUNT;
+    private final MinecraftServer server = ((CraftServer) Bukkit.getServer()).getServer();
 
-    public CraftBukkitBoilerplateImpl() throws NoSuchFieldException, IllegalAccessException {
-        Field field = MinecraftServer.class.getDeclaredField("ticks");
-        field.setAccessible(true);
+    static {
+        try {
+            Field field = MinecraftServer.class.getDeclaredField("ticks");
+            field.setAccessible(true);
 
-        this.handle = MethodHandles.lookup().unreflectGetter(field);
+            // the handle is stored in a constant and invoked with its exact type in order to
+            // permit the JIT to inline the field access
+            TICK_COUNT = MethodHandles.lookup().unreflectGetter(field);
+        } catch (NoSuchFieldException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
     }
 
     /**
@@ -33,9 +40,27 @@ public class CraftBukkitBoilerplateImpl implements CraftBukkitBoilerplate {
     @Override
     public int getTickCount() {
         try {
-            return (int) this.handle.invoke(((CraftServer) Bukkit.getServer()).getServer());
+            return (int) TICK_COUNT.invokeExact(this.server);
         } catch (Throwable ex) {
             throw new RuntimeException("Could not access NMS tick count: " + ex.getMessage(), ex);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsTickDurations() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTickDuration(int tick) {
+        // the server stores the duration of each tick within a ring buffer of 100 elements which
+        // is indexed by the tick number
+        return this.server.h[tick % 100];
+    }
 }
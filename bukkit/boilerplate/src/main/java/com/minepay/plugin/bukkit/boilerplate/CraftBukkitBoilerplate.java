@@ -17,8 +17,12 @@ public interface CraftBukkitBoilerplate {
     /**
      * Retrieves a boilerplate instance depending on the reported server version.
      *
-     * @return a boilerplate implementation or, if no matching implementation could be located, an
-     * empty optional.
+     * When no dedicated implementation exists for the server version (or the implementation is
+     * incompatible with the server build), the required NMS members are located reflectively
+     * instead.
+     *
+     * @return a boilerplate implementation or, if neither a matching implementation nor the
+     * required NMS members could be located, an empty optional.
      */
     @Nonnull
     static Optional<CraftBukkitBoilerplate> getInstance() {
@@ -27,11 +31,15 @@ public interface CraftBukkitBoilerplate {
         try {
             Class<?> clazz = Class.forName("com.minepay.plugin.bukkit.boilerplate." + serverVersion + ".CraftBukkitBoilerplateImpl");
             return Optional.of(clazz.asSubclass(CraftBukkitBoilerplate.class).newInstance());
-        } catch (ClassNotFoundException ignore) {
+        } catch (ClassNotFoundException | LinkageError ignore) {
         } catch (IllegalAccessException | InstantiationException ex) {
             throw new RuntimeException("Could not instantiate CraftBukkit support implementation from com.minepay.plugin.bukkit.boilerplate." + serverVersion + ".CraftBukkitBoilerplateImpl: " + ex.getMessage(), ex);
         }
 
+        if (ReflectiveCraftBukkitBoilerplate.isSupported()) {
+            return Optional.of(new ReflectiveCraftBukkitBoilerplate());
+        }
+
         return Optional.empty();
     }
 
@@ -42,4 +50,28 @@ public interface CraftBukkitBoilerplate {
      */
     @Nonnegative
     int getTickCount();
+
+    /**
+     * Evaluates whether this implementation is capable of retrieving the duration of individual
+     * ticks.
+     *
+     * @return true if supported, false otherwise.
+     * @see #getTickDuration(int)
+     */
+    default boolean supportsTickDurations() {
+        return false;
+    }
+
+    /**
+     * Retrieves the time it took the server to process a recently completed tick.
+     *
+     * The server only retains the durations of the last 100 ticks and thus implementations will
+     * return stale values for ticks which lie further back.
+     *
+     * @param tick a tick number as returned by {@link #getTickCount()}.
+     * @return a duration in nanoseconds or, if the duration cannot be determined, -1.
+     */
+    default long getTickDuration(@Nonnegative int tick) {
+        return -1;
+    }
 }
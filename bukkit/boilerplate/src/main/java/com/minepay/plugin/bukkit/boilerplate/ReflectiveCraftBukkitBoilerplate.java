@@ -0,0 +1,157 @@
+package com.minepay.plugin.bukkit.boilerplate;
+
+import org.bukkit.Bukkit;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Provides a CraftBukkit boilerplate which locates the required NMS members reflectively and is
+ * thus capable of supporting server versions which lack a dedicated implementation.
+ *
+ * The server instance and all members are resolved exactly once when this class is initialized.
+ * The tick counter getter is bound to the server instance and stored within a constant in order
+ * to permit the JIT to inline calls to {@link MethodHandle#invokeExact(Object...)} the same way it
+ * would inline a regular field access. The tick duration buffer is never replaced by the server
+ * and is thus referenced directly.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+final class ReflectiveCraftBukkitBoilerplate implements CraftBukkitBoilerplate {
+    private static final String TICK_COUNT_FIELD_NAME = "ticks";
+    private static final int TICK_DURATION_BUFFER_SIZE = 100;
+    private static final MethodHandle TICK_COUNT;
+    private static final long[] TICK_DURATIONS;
+
+    static {
+        MethodHandle tickCount = null;
+        long[] tickDurations = null;
+
+        try {
+            Object server = Bukkit.getServer().getClass().getMethod("getServer").invoke(Bukkit.getServer());
+            Field tickCountField = findTickCountField(server.getClass());
+
+            if (tickCountField != null) {
+                tickCountField.setAccessible(true);
+                tickCount = MethodHandles.lookup().unreflectGetter(tickCountField).bindTo(server).asType(MethodType.methodType(int.class));
+                tickDurations = findTickDurations(server);
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignore) {
+            // the server does not expose a compatible NMS implementation
+        }
+
+        TICK_COUNT = tickCount;
+        TICK_DURATIONS = tickDurations;
+    }
+
+    /**
+     * Evaluates whether the members required by this implementation could be located.
+     *
+     * @return true if supported, false otherwise.
+     */
+    static boolean isSupported() {
+        return TICK_COUNT != null;
+    }
+
+    /**
+     * Locates the tick counter within the server class hierarchy.
+     *
+     * @param type a server type.
+     * @return a field or, if no matching field exists, null.
+     */
+    @Nullable
+    private static Field findTickCountField(@Nonnull Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                Field field = current.getDeclaredField(TICK_COUNT_FIELD_NAME);
+
+                if (field.getType() == int.class && !Modifier.isStatic(field.getModifiers())) {
+                    return field;
+                }
+            } catch (NoSuchFieldException ignore) {
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Locates the buffer in which the server stores the durations of recent ticks.
+     *
+     * The name of this field is obfuscated and changes between server versions. It is thus
+     * identified by its type and length instead. Since guessing wrong would silently report
+     * bogus durations, no buffer is returned unless exactly one candidate exists.
+     *
+     * @param server a server instance.
+     * @return a buffer or, if no unambiguous candidate exists, null.
+     *
+     * @throws IllegalAccessException when accessing a candidate fails.
+     */
+    @Nullable
+    private static long[] findTickDurations(@Nonnull Object server) throws IllegalAccessException {
+        long[] buffer = null;
+
+        for (Class<?> current = server.getClass(); current != null; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+
+                if (field.getType() != long[].class || Modifier.isStatic(modifiers) || !Modifier.isFinal(modifiers)) {
+                    continue;
+                }
+
+                field.setAccessible(true);
+                long[] candidate = (long[]) field.get(server);
+
+                if (candidate == null || candidate.length != TICK_DURATION_BUFFER_SIZE) {
+                    continue;
+                }
+
+                if (buffer != null) {
+                    return null;
+                }
+
+                buffer = candidate;
+            }
+        }
+
+        return buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTickCount() {
+        try {
+            return (int) TICK_COUNT.invokeExact();
+        } catch (Throwable ex) {
+            throw new RuntimeException("Could not access NMS tick count: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsTickDurations() {
+        return TICK_DURATIONS != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTickDuration(int tick) {
+        if (TICK_DURATIONS == null) {
+            return -1;
+        }
+
+        return TICK_DURATIONS[tick % TICK_DURATION_BUFFER_SIZE];
+    }
+}
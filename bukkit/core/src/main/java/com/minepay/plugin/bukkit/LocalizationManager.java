@@ -45,6 +45,16 @@ public class LocalizationManager {
         }
     }
 
+    /**
+     * Retrieves the currently active locale.
+     *
+     * @return a locale or, if no locale has been selected yet, null.
+     */
+    @Nullable
+    public Locale getLocale() {
+        return this.locale;
+    }
+
     /**
      * Updates the current locale.
      *
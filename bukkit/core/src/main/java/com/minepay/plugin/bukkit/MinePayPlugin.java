@@ -5,18 +5,32 @@ import com.minepay.plugin.bukkit.boilerplate.CraftBukkitBoilerplate;
 import com.minepay.plugin.bukkit.command.BuyCommandExecutor;
 import com.minepay.plugin.bukkit.command.ConfigurationCommandExecutor;
 import com.minepay.plugin.bukkit.gui.MenuManager;
+import com.minepay.plugin.bukkit.storefront.CartLayouts;
 import com.minepay.plugin.bukkit.storefront.CartManager;
+import com.minepay.plugin.bukkit.storefront.CartPool;
+import com.minepay.plugin.bukkit.storefront.CatalogIndex;
 import com.minepay.plugin.bukkit.storefront.Category;
+import com.minepay.plugin.bukkit.storefront.IconCache;
+import com.minepay.plugin.bukkit.task.CommandLongPollTask;
+import com.minepay.plugin.bukkit.task.LagWatchdog;
 import com.minepay.plugin.bukkit.task.PackageTask;
+import com.minepay.plugin.bukkit.task.RuntimeMetricsTask;
+import com.minepay.plugin.bukkit.task.TelemetrySampleTask;
 import com.minepay.plugin.bukkit.task.TelemetryTask;
 import com.minepay.plugin.bukkit.task.TickAverageTask;
 import com.minepay.plugin.bukkit.task.TickCounterTask;
+import com.minepay.plugin.bukkit.task.TickScheduler;
+import com.minepay.plugin.bukkit.task.TickTracker;
+import com.minepay.plugin.bukkit.telemetry.MetricRegistry;
 import com.minepay.plugin.bukkit.telemetry.Submission;
+import com.minepay.plugin.bukkit.telemetry.TelemetryHistory;
 import com.zaxxer.hikari.HikariDataSource;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.WordUtils;
 import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.FileNotFoundException;
@@ -25,6 +39,7 @@ import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.logging.Level;
@@ -42,23 +57,41 @@ public class MinePayPlugin extends JavaPlugin {
     private final PluginConfiguration configuration = new PluginConfiguration();
     private final LocalizationManager localizationManager = new LocalizationManager(this);
     private final BukkitBoilerplate bukkitBoilerplate = BukkitBoilerplate.getInstance();
-    private final MenuManager menuManager = new MenuManager();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final MenuManager menuManager = new MenuManager(this, this.metricRegistry);
     private final CartManager cartManager = new CartManager(this);
+    private final CartPool cartPool = new CartPool(this);
+    private final IconCache iconCache = new IconCache(this);
+    private final CartLayouts cartLayouts = new CartLayouts(this);
 
     // we're storing an optional in this field in order to simplify code further down the road
     // this is generally not recommended so please don't just adapt this in your plugins like a
     // mindless zombie ...
     @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
     private final Optional<CraftBukkitBoilerplate> craftBukkitBoilerplate = CraftBukkitBoilerplate.getInstance();
-    private final TickCounterTask tickCounterTask = new TickCounterTask();
+    private final TickTracker tickTracker = new TickTracker(this.craftBukkitBoilerplate.orElse(null));
+    private final TickCounterTask tickCounterTask = new TickCounterTask(this.tickTracker);
+    private final TickScheduler tickScheduler = new TickScheduler(this, this.tickTracker);
     private final TickAverageTask tickAverageTask = new TickAverageTask(this.tickCounterTask, this.craftBukkitBoilerplate.orElse(null));
     private final TelemetryTask telemetryTask = new TelemetryTask(this);
+    private final TelemetryHistory telemetryHistory = new TelemetryHistory();
+    private final RuntimeMetricsTask runtimeMetricsTask = new RuntimeMetricsTask();
+    private final TelemetrySampleTask telemetrySampleTask = new TelemetrySampleTask(this.telemetryTask, this.telemetryHistory);
     private PackageTask packageTask;
+    private CommandLongPollTask commandLongPollTask;
+    private LagWatchdog lagWatchdog;
     private HikariDataSource dataSource;
     private int tickCounterTaskId = -1;
     private int tickAverageTaskId = -1;
+    private int tickTrackerTaskId = -1;
     private int telemetryTaskId = -1;
+    private int telemetryFlushTaskId = -1;
+    private int telemetrySampleTaskId = -1;
+    private int runtimeMetricsTaskId = -1;
     private int packageTaskId = -1;
+    private int cartExpiryTaskId = -1;
+    private int lagWatchdogTaskId = -1;
+    private int tickSchedulerTaskId = -1;
 
     @Nonnull
     public LocalizationManager getLocalizationManager() {
@@ -114,15 +147,56 @@ public class MinePayPlugin extends JavaPlugin {
     /**
      * Enables the plugin functionality as soon as the authentication information is available.
      */
+    @SuppressWarnings("deprecation")
     public void enableFunctionality() {
-        if (!this.craftBukkitBoilerplate.isPresent() && this.tickCounterTaskId == -1) {
+        // the counter task also provides the tick durations when the server does not expose them
+        if (!this.tickTracker.isExact() && this.tickCounterTaskId == -1) {
+            this.tickCounterTask.reset();
             this.tickCounterTaskId = this.getServer().getScheduler().scheduleSyncRepeatingTask(this, this.tickCounterTask, 1, 1);
         }
 
         if (this.tickAverageTaskId == -1) {
+            this.tickAverageTask.reset();
             this.tickAverageTaskId = this.getServer().getScheduler().scheduleSyncRepeatingTask(this, this.tickAverageTask, 50, 25);
         }
 
+        if (this.tickTrackerTaskId == -1) {
+            this.tickTrackerTaskId = this.getServer().getScheduler().scheduleSyncRepeatingTask(this, this.tickTracker, 20, 20);
+        }
+
+        if (this.telemetrySampleTaskId == -1) {
+            this.telemetrySampleTaskId = this.getServer().getScheduler().scheduleSyncRepeatingTask(this, () -> this.tickScheduler.submit(TickScheduler.Priority.DEFERRABLE, this.telemetrySampleTask), 20, 20);
+        }
+
+        if (this.runtimeMetricsTaskId == -1) {
+            this.runtimeMetricsTaskId = this.getServer().getScheduler().scheduleAsyncRepeatingTask(this, this.runtimeMetricsTask, 0, 100);
+        }
+
+        if (this.packageTaskId == -1 && !this.configuration.getStoreName().isEmpty()) {
+            this.packageTask = new PackageTask(this, this.configuration.getStoreName());
+            this.packageTaskId = this.getServer().getScheduler().scheduleAsyncRepeatingTask(this, this.packageTask, 0, Math.max(1, this.configuration.getCatalogRefreshInterval()) * 20);
+        }
+
+        if (this.commandLongPollTask == null) {
+            this.commandLongPollTask = new CommandLongPollTask(this);
+            this.getServer().getScheduler().scheduleAsyncDelayedTask(this, this.commandLongPollTask);
+        }
+
+        if (this.cartExpiryTaskId == -1) {
+            this.cartExpiryTaskId = this.getServer().getScheduler().scheduleSyncRepeatingTask(this, () -> {
+                this.cartManager.expire();
+                this.cartPool.purge();
+            }, 1200, 1200);
+        }
+
+        if (this.lagWatchdog == null && this.configuration.isWatchdogEnabled()) {
+            // this method is always invoked from the server thread which is thus handed to the
+            // watchdog for sampling purposes
+            this.lagWatchdog = new LagWatchdog(this, Thread.currentThread(), this.configuration.getWatchdogThreshold(), this.configuration.getWatchdogSampleInterval());
+            this.lagWatchdogTaskId = this.getServer().getScheduler().scheduleSyncRepeatingTask(this, this.lagWatchdog, 1, 1);
+            this.lagWatchdog.start();
+        }
+
         if (this.configuration.isTelemetryEnabled()) {
             this.enableTelemetry();
         }
@@ -138,6 +212,11 @@ public class MinePayPlugin extends JavaPlugin {
     public void disableFunctionality() {
         this.disableTelemetry();
 
+        if (this.commandLongPollTask != null) {
+            this.commandLongPollTask.shutdown();
+            this.commandLongPollTask = null;
+        }
+
         if (this.tickCounterTaskId != -1) {
             this.getServer().getScheduler().cancelTask(this.tickCounterTaskId);
             this.tickCounterTaskId = -1;
@@ -145,30 +224,81 @@ public class MinePayPlugin extends JavaPlugin {
 
         this.getServer().getScheduler().cancelTask(this.tickAverageTaskId);
         this.tickAverageTaskId = -1;
+
+        if (this.tickTrackerTaskId != -1) {
+            this.getServer().getScheduler().cancelTask(this.tickTrackerTaskId);
+            this.tickTrackerTaskId = -1;
+        }
+
+        if (this.telemetrySampleTaskId != -1) {
+            this.getServer().getScheduler().cancelTask(this.telemetrySampleTaskId);
+            this.telemetrySampleTaskId = -1;
+        }
+
+        if (this.runtimeMetricsTaskId != -1) {
+            this.getServer().getScheduler().cancelTask(this.runtimeMetricsTaskId);
+            this.runtimeMetricsTaskId = -1;
+        }
+
+        if (this.packageTaskId != -1) {
+            this.getServer().getScheduler().cancelTask(this.packageTaskId);
+            this.packageTaskId = -1;
+        }
+
+        if (this.cartExpiryTaskId != -1) {
+            this.getServer().getScheduler().cancelTask(this.cartExpiryTaskId);
+            this.cartExpiryTaskId = -1;
+        }
+
+        if (this.lagWatchdog != null) {
+            this.getServer().getScheduler().cancelTask(this.lagWatchdogTaskId);
+            this.lagWatchdog.shutdown();
+            this.lagWatchdog = null;
+            this.lagWatchdogTaskId = -1;
+        }
     }
 
     /**
      * Enables the submission of telemetry data.
      */
+    @SuppressWarnings("deprecation") // Bukkit idiotism
     public void enableTelemetry() {
         if (this.telemetryTaskId != -1) {
             return;
         }
 
+        long flushInterval = Math.max(1, this.configuration.getTelemetryFlushInterval()) * 20;
+
         this.telemetryTaskId = this.getServer().getScheduler().scheduleSyncRepeatingTask(this, this.telemetryTask, 600, 600);
+        this.telemetryFlushTaskId = this.getServer().getScheduler().scheduleAsyncRepeatingTask(this, this.telemetryTask::flush, flushInterval, flushInterval);
         this.getLogger().info("Telemetry submission is now enabled");
     }
 
     /**
      * Disables the submission of telemetry data.
      */
+    @SuppressWarnings("deprecation")
     public void disableTelemetry() {
         if (this.telemetryTaskId == -1) {
             return;
         }
 
         this.getServer().getScheduler().cancelTask(this.telemetryTaskId);
+        this.getServer().getScheduler().cancelTask(this.telemetryFlushTaskId);
         this.telemetryTaskId = -1;
+        this.telemetryFlushTaskId = -1;
+
+        // data which has not been flushed yet is kept for the next session unless the server
+        // administrator has opted out of telemetry entirely
+        Runnable task = (this.configuration.isTelemetryEnabled() ? this.telemetryTask::spool : this.telemetryTask::discard);
+
+        // tasks can no longer be scheduled once the plugin is being disabled in which case the
+        // spool is written right away
+        if (this.isEnabled()) {
+            this.getServer().getScheduler().scheduleAsyncDelayedTask(this, task);
+        } else {
+            task.run();
+        }
 
         this.getLogger().info("Telemetry submission has been disabled");
     }
@@ -183,6 +313,21 @@ public class MinePayPlugin extends JavaPlugin {
         return this.cartManager;
     }
 
+    @Nonnull
+    public CartPool getCartPool() {
+        return this.cartPool;
+    }
+
+    @Nonnull
+    public IconCache getIconCache() {
+        return this.iconCache;
+    }
+
+    @Nonnull
+    public CartLayouts getCartLayouts() {
+        return this.cartLayouts;
+    }
+
     /**
      * Retrieves a cached list of known store categories.
      *
@@ -197,6 +342,50 @@ public class MinePayPlugin extends JavaPlugin {
         return this.packageTask.getCategories();
     }
 
+    /**
+     * Retrieves the search index for the cached set of store categories.
+     *
+     * @return an index.
+     */
+    @Nullable
+    public CatalogIndex getCatalogIndex() {
+        if (this.packageTask == null) {
+            return null;
+        }
+
+        return this.packageTask.getIndex();
+    }
+
+    /**
+     * Retrieves the version of the cached set of store categories.
+     *
+     * @return a version.
+     */
+    @Nonnegative
+    public long getCatalogVersion() {
+        if (this.packageTask == null) {
+            return 0;
+        }
+
+        return this.packageTask.getVersion();
+    }
+
+    /**
+     * Schedules a refresh of the specified categories in response to a change notification.
+     *
+     * @param categoryIds a set of category identifiers.
+     */
+    @SuppressWarnings("deprecation")
+    public void refreshCatalog(@Nonnull Collection<Long> categoryIds) {
+        final PackageTask packageTask = this.packageTask;
+
+        if (packageTask == null) {
+            return;
+        }
+
+        this.getServer().getScheduler().scheduleAsyncDelayedTask(this, () -> packageTask.refresh(categoryIds));
+    }
+
     /**
      * Retrieves the most recent telemetry submission.
      *
@@ -208,7 +397,28 @@ public class MinePayPlugin extends JavaPlugin {
     }
 
     /**
-     * Retrieves the average amount of ticks processed in a second by the server.
+     * Retrieves the registry which collects the metrics reported by the plugin internals.
+     *
+     * @return a registry.
+     */
+    @Nonnull
+    public MetricRegistry getMetricRegistry() {
+        return this.metricRegistry;
+    }
+
+    /**
+     * Retrieves the local history of telemetry metrics.
+     *
+     * @return a history.
+     */
+    @Nonnull
+    public TelemetryHistory getTelemetryHistory() {
+        return this.telemetryHistory;
+    }
+
+    /**
+     * Retrieves the average amount of ticks processed in a second by the server over the last
+     * minute.
      *
      * @return a tick average.
      */
@@ -217,6 +427,48 @@ public class MinePayPlugin extends JavaPlugin {
         return this.tickAverageTask.getAverage();
     }
 
+    /**
+     * Retrieves the average amount of ticks processed in a second by the server within a certain
+     * window.
+     *
+     * @param window a window.
+     * @return a tick average.
+     */
+    @Nonnegative
+    public float getTickAverage(@Nonnull TickAverageTask.Window window) {
+        return this.tickAverageTask.getAverage(window);
+    }
+
+    /**
+     * Retrieves the tracker which measures the duration of individual ticks.
+     *
+     * @return a tick tracker.
+     */
+    @Nonnull
+    public TickTracker getTickTracker() {
+        return this.tickTracker;
+    }
+
+    /**
+     * Retrieves the task which samples the state of the JVM.
+     *
+     * @return a runtime metrics task.
+     */
+    @Nonnull
+    public RuntimeMetricsTask getRuntimeMetrics() {
+        return this.runtimeMetricsTask;
+    }
+
+    /**
+     * Retrieves the scheduler which distributes work on the server thread across ticks.
+     *
+     * @return a tick scheduler.
+     */
+    @Nonnull
+    public TickScheduler getTickScheduler() {
+        return this.tickScheduler;
+    }
+
     /**
      * Checks whether telemetry is currently active.
      *
@@ -265,10 +517,29 @@ public class MinePayPlugin extends JavaPlugin {
         }
 
         this.localizationManager.setLocale(this.configuration.getLocale());
+        this.menuManager.setPlayerClickRate(this.configuration.getPlayerClickRate(), this.configuration.getPlayerClickBurst());
+        this.menuManager.setMenuClickRate(this.configuration.getMenuClickRate(), this.configuration.getMenuClickBurst());
+        this.menuManager.setAsyncTimeout(this.configuration.getAsyncItemTimeout() * 20);
+        this.menuManager.setPlaceholderIcon(this.createMenuIcon(this.menuManager.getPlaceholderIcon(), "interface.menu.loading"));
+        this.menuManager.setTimeoutIcon(this.createMenuIcon(this.menuManager.getTimeoutIcon(), "interface.menu.timeout"));
+        this.menuManager.setErrorIcon(this.createMenuIcon(this.menuManager.getErrorIcon(), "interface.menu.error"));
+        this.menuManager.setSyncExecutor((task) -> this.tickScheduler.submit(TickScheduler.Priority.NORMAL, task));
+
+        this.metricRegistry.gauge("cart.active", this.cartManager::getActiveCount);
+        this.metricRegistry.gauge("telemetry.pending", this.telemetryTask::getPendingCount);
+        this.metricRegistry.gauge("mspt.p50", this.tickTracker::getMedian);
+        this.metricRegistry.gauge("mspt.p95", this.tickTracker::getPercentile95);
+        this.metricRegistry.gauge("mspt.max", this.tickTracker::getMaximum);
+        this.metricRegistry.gauge("scheduler.pending", this.tickScheduler::getPendingCount);
+
+        // the scheduler is required by menus and carts and thus remains active while the
+        // remaining functionality is disabled
+        this.tickSchedulerTaskId = this.getServer().getScheduler().scheduleSyncRepeatingTask(this, this.tickScheduler, 1, 1);
 
         // register event handlers
         this.getServer().getPluginManager().registerEvents(this.menuManager, this);
         this.getServer().getPluginManager().registerEvents(this.cartManager, this);
+        this.getServer().getPluginManager().registerEvents(this.cartPool, this);
 
         // register command executors
         this.getServer().getPluginCommand("minepay").setExecutor(new ConfigurationCommandExecutor(this));
@@ -301,9 +572,34 @@ public class MinePayPlugin extends JavaPlugin {
     public void onDisable() {
         super.onDisable();
 
+        this.disableFunctionality();
+
+        if (this.tickSchedulerTaskId != -1) {
+            this.getServer().getScheduler().cancelTask(this.tickSchedulerTaskId);
+            this.tickSchedulerTaskId = -1;
+        }
+
         this.dataSource.close();
     }
 
+    /**
+     * Creates a localized copy of a menu icon.
+     *
+     * @param icon an icon.
+     * @param key  a localization key.
+     * @return an icon.
+     */
+    @Nonnull
+    private ItemStack createMenuIcon(@Nonnull ItemStack icon, @Nonnull String key) {
+        ItemStack copy = icon.clone();
+        {
+            ItemMeta meta = copy.getItemMeta();
+            meta.setDisplayName(this.localizationManager.get(key));
+            copy.setItemMeta(meta);
+        }
+        return copy;
+    }
+
     /**
      * Attempts to save the configuration file back to disk and reports any errors that arise to the
      * user via the server console.
@@ -7,6 +7,7 @@ import java.nio.file.Path;
 import java.util.Locale;
 import java.util.Properties;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -22,6 +23,25 @@ public class PluginConfiguration {
     private String storeName = "";
     private Locale locale = Locale.ENGLISH;
     private boolean telemetryEnabled = true;
+    private long telemetryFlushInterval = 300;
+    private long telemetrySpoolCapacity = 1048576;
+    private boolean batchedCheckout = false;
+    private int cartCapacity = 1000;
+    private long cartIdleTimeout = 900;
+    private boolean cartPoolEnabled = false;
+    private int cartPoolCapacity = 64;
+    private long cartPoolTtl = 300;
+    private long catalogRefreshInterval = 3600;
+    private int playerClickRate = 10;
+    private int playerClickBurst = 10;
+    private int menuClickRate = 5;
+    private int menuClickBurst = 5;
+    private long asyncItemTimeout = 5;
+    private boolean watchdogEnabled = false;
+    private long watchdogThreshold = 250;
+    private long watchdogSampleInterval = 10;
+    private long schedulerTickBudget = 5;
+    private long schedulerOverloadThreshold = 50;
 
     @Nonnull
     public String getServerId() {
@@ -49,6 +69,174 @@ public class PluginConfiguration {
         this.telemetryEnabled = telemetryEnabled;
     }
 
+    @Nonnegative
+    public long getTelemetryFlushInterval() {
+        return this.telemetryFlushInterval;
+    }
+
+    public void setTelemetryFlushInterval(@Nonnegative long telemetryFlushInterval) {
+        this.telemetryFlushInterval = telemetryFlushInterval;
+    }
+
+    @Nonnegative
+    public long getTelemetrySpoolCapacity() {
+        return this.telemetrySpoolCapacity;
+    }
+
+    public void setTelemetrySpoolCapacity(@Nonnegative long telemetrySpoolCapacity) {
+        this.telemetrySpoolCapacity = telemetrySpoolCapacity;
+    }
+
+    public boolean isBatchedCheckout() {
+        return this.batchedCheckout;
+    }
+
+    public void setBatchedCheckout(boolean batchedCheckout) {
+        this.batchedCheckout = batchedCheckout;
+    }
+
+    @Nonnegative
+    public int getCartCapacity() {
+        return this.cartCapacity;
+    }
+
+    public void setCartCapacity(@Nonnegative int cartCapacity) {
+        this.cartCapacity = cartCapacity;
+    }
+
+    @Nonnegative
+    public long getCartIdleTimeout() {
+        return this.cartIdleTimeout;
+    }
+
+    public void setCartIdleTimeout(@Nonnegative long cartIdleTimeout) {
+        this.cartIdleTimeout = cartIdleTimeout;
+    }
+
+    public boolean isCartPoolEnabled() {
+        return this.cartPoolEnabled;
+    }
+
+    public void setCartPoolEnabled(boolean cartPoolEnabled) {
+        this.cartPoolEnabled = cartPoolEnabled;
+    }
+
+    @Nonnegative
+    public int getCartPoolCapacity() {
+        return this.cartPoolCapacity;
+    }
+
+    public void setCartPoolCapacity(@Nonnegative int cartPoolCapacity) {
+        this.cartPoolCapacity = cartPoolCapacity;
+    }
+
+    @Nonnegative
+    public long getCartPoolTtl() {
+        return this.cartPoolTtl;
+    }
+
+    public void setCartPoolTtl(@Nonnegative long cartPoolTtl) {
+        this.cartPoolTtl = cartPoolTtl;
+    }
+
+    @Nonnegative
+    public long getCatalogRefreshInterval() {
+        return this.catalogRefreshInterval;
+    }
+
+    public void setCatalogRefreshInterval(@Nonnegative long catalogRefreshInterval) {
+        this.catalogRefreshInterval = catalogRefreshInterval;
+    }
+
+    @Nonnegative
+    public int getPlayerClickRate() {
+        return this.playerClickRate;
+    }
+
+    public void setPlayerClickRate(@Nonnegative int playerClickRate) {
+        this.playerClickRate = playerClickRate;
+    }
+
+    @Nonnegative
+    public int getPlayerClickBurst() {
+        return this.playerClickBurst;
+    }
+
+    public void setPlayerClickBurst(@Nonnegative int playerClickBurst) {
+        this.playerClickBurst = playerClickBurst;
+    }
+
+    @Nonnegative
+    public int getMenuClickRate() {
+        return this.menuClickRate;
+    }
+
+    public void setMenuClickRate(@Nonnegative int menuClickRate) {
+        this.menuClickRate = menuClickRate;
+    }
+
+    @Nonnegative
+    public int getMenuClickBurst() {
+        return this.menuClickBurst;
+    }
+
+    public void setMenuClickBurst(@Nonnegative int menuClickBurst) {
+        this.menuClickBurst = menuClickBurst;
+    }
+
+    @Nonnegative
+    public long getAsyncItemTimeout() {
+        return this.asyncItemTimeout;
+    }
+
+    public void setAsyncItemTimeout(@Nonnegative long asyncItemTimeout) {
+        this.asyncItemTimeout = asyncItemTimeout;
+    }
+
+    public boolean isWatchdogEnabled() {
+        return this.watchdogEnabled;
+    }
+
+    public void setWatchdogEnabled(boolean watchdogEnabled) {
+        this.watchdogEnabled = watchdogEnabled;
+    }
+
+    @Nonnegative
+    public long getWatchdogThreshold() {
+        return this.watchdogThreshold;
+    }
+
+    public void setWatchdogThreshold(@Nonnegative long watchdogThreshold) {
+        this.watchdogThreshold = watchdogThreshold;
+    }
+
+    @Nonnegative
+    public long getWatchdogSampleInterval() {
+        return this.watchdogSampleInterval;
+    }
+
+    public void setWatchdogSampleInterval(@Nonnegative long watchdogSampleInterval) {
+        this.watchdogSampleInterval = watchdogSampleInterval;
+    }
+
+    @Nonnegative
+    public long getSchedulerTickBudget() {
+        return this.schedulerTickBudget;
+    }
+
+    public void setSchedulerTickBudget(@Nonnegative long schedulerTickBudget) {
+        this.schedulerTickBudget = schedulerTickBudget;
+    }
+
+    @Nonnegative
+    public long getSchedulerOverloadThreshold() {
+        return this.schedulerOverloadThreshold;
+    }
+
+    public void setSchedulerOverloadThreshold(@Nonnegative long schedulerOverloadThreshold) {
+        this.schedulerOverloadThreshold = schedulerOverloadThreshold;
+    }
+
     @Nullable
     public Locale getLocale() {
         return this.locale;
@@ -73,8 +261,28 @@ public class PluginConfiguration {
         }
 
         this.serverId = properties.getProperty("connection.serverId", "");
+        this.storeName = properties.getProperty("connection.storeName", "");
         this.locale = Locale.forLanguageTag(properties.getProperty("interface.locale", Locale.ENGLISH.toLanguageTag()));
         this.telemetryEnabled = !Boolean.valueOf(properties.getProperty("telemetry.opt-out", "false"));
+        this.telemetryFlushInterval = Long.parseUnsignedLong(properties.getProperty("telemetry.flush-interval", "300"));
+        this.telemetrySpoolCapacity = Long.parseUnsignedLong(properties.getProperty("telemetry.spool.capacity", "1048576"));
+        this.batchedCheckout = Boolean.valueOf(properties.getProperty("store.cart.batched", "false"));
+        this.cartCapacity = Integer.parseUnsignedInt(properties.getProperty("store.cart.capacity", "1000"));
+        this.cartIdleTimeout = Long.parseUnsignedLong(properties.getProperty("store.cart.idle-timeout", "900"));
+        this.cartPoolEnabled = Boolean.valueOf(properties.getProperty("store.cart.prewarm", "false"));
+        this.cartPoolCapacity = Integer.parseUnsignedInt(properties.getProperty("store.cart.prewarm.capacity", "64"));
+        this.cartPoolTtl = Long.parseUnsignedLong(properties.getProperty("store.cart.prewarm.ttl", "300"));
+        this.catalogRefreshInterval = Long.parseUnsignedLong(properties.getProperty("store.catalog.refresh-interval", "3600"));
+        this.playerClickRate = Integer.parseUnsignedInt(properties.getProperty("interface.click.player.rate", "10"));
+        this.playerClickBurst = Integer.parseUnsignedInt(properties.getProperty("interface.click.player.burst", "10"));
+        this.menuClickRate = Integer.parseUnsignedInt(properties.getProperty("interface.click.menu.rate", "5"));
+        this.menuClickBurst = Integer.parseUnsignedInt(properties.getProperty("interface.click.menu.burst", "5"));
+        this.asyncItemTimeout = Long.parseUnsignedLong(properties.getProperty("interface.async-timeout", "5"));
+        this.watchdogEnabled = Boolean.valueOf(properties.getProperty("watchdog.enabled", "false"));
+        this.watchdogThreshold = Long.parseUnsignedLong(properties.getProperty("watchdog.threshold", "250"));
+        this.watchdogSampleInterval = Long.parseUnsignedLong(properties.getProperty("watchdog.sample-interval", "10"));
+        this.schedulerTickBudget = Long.parseUnsignedLong(properties.getProperty("scheduler.tick-budget", "5"));
+        this.schedulerOverloadThreshold = Long.parseUnsignedLong(properties.getProperty("scheduler.overload-threshold", "50"));
     }
 
     /**
@@ -86,8 +294,28 @@ public class PluginConfiguration {
     public void save(@Nonnull Path baseDirectory) throws IOException {
         Properties properties = new Properties();
         properties.setProperty("connection.serverId", this.serverId);
+        properties.setProperty("connection.storeName", this.storeName);
         properties.setProperty("interface.locale", this.locale.toLanguageTag());
         properties.setProperty("telemetry.opt-out", Boolean.toString(!this.telemetryEnabled));
+        properties.setProperty("telemetry.flush-interval", Long.toString(this.telemetryFlushInterval));
+        properties.setProperty("telemetry.spool.capacity", Long.toString(this.telemetrySpoolCapacity));
+        properties.setProperty("store.cart.batched", Boolean.toString(this.batchedCheckout));
+        properties.setProperty("store.cart.capacity", Integer.toString(this.cartCapacity));
+        properties.setProperty("store.cart.idle-timeout", Long.toString(this.cartIdleTimeout));
+        properties.setProperty("store.cart.prewarm", Boolean.toString(this.cartPoolEnabled));
+        properties.setProperty("store.cart.prewarm.capacity", Integer.toString(this.cartPoolCapacity));
+        properties.setProperty("store.cart.prewarm.ttl", Long.toString(this.cartPoolTtl));
+        properties.setProperty("store.catalog.refresh-interval", Long.toString(this.catalogRefreshInterval));
+        properties.setProperty("interface.click.player.rate", Integer.toString(this.playerClickRate));
+        properties.setProperty("interface.click.player.burst", Integer.toString(this.playerClickBurst));
+        properties.setProperty("interface.click.menu.rate", Integer.toString(this.menuClickRate));
+        properties.setProperty("interface.click.menu.burst", Integer.toString(this.menuClickBurst));
+        properties.setProperty("interface.async-timeout", Long.toString(this.asyncItemTimeout));
+        properties.setProperty("watchdog.enabled", Boolean.toString(this.watchdogEnabled));
+        properties.setProperty("watchdog.threshold", Long.toString(this.watchdogThreshold));
+        properties.setProperty("watchdog.sample-interval", Long.toString(this.watchdogSampleInterval));
+        properties.setProperty("scheduler.tick-budget", Long.toString(this.schedulerTickBudget));
+        properties.setProperty("scheduler.overload-threshold", Long.toString(this.schedulerOverloadThreshold));
 
         try (FileOutputStream outputStream = new FileOutputStream(baseDirectory.resolve(CONFIGURATION_FILE_NAME).toFile())) {
             properties.store(outputStream, "");
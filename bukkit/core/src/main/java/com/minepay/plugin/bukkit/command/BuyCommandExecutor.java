@@ -2,6 +2,7 @@ package com.minepay.plugin.bukkit.command;
 
 import com.minepay.plugin.bukkit.MinePayPlugin;
 import com.minepay.plugin.bukkit.storefront.Cart;
+import com.minepay.plugin.bukkit.storefront.CatalogIndex;
 
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -9,6 +10,8 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.Arrays;
+
 import javax.annotation.Nonnull;
 
 /**
@@ -37,6 +40,12 @@ public class BuyCommandExecutor implements CommandExecutor {
         }
 
         Player player = (Player) commandSender;
+
+        if (arguments.length != 0 && "search".equalsIgnoreCase(arguments[0])) {
+            this.search(player, label, Arrays.copyOfRange(arguments, 1, arguments.length));
+            return true;
+        }
+
         this.plugin.getCartManager().create(player, this::onCartCreated, () -> commandSender.sendMessage(this.plugin.getLocalizationManager().get("command.buy.failure")));
 
         return true;
@@ -50,4 +59,46 @@ public class BuyCommandExecutor implements CommandExecutor {
     private void onCartCreated(@Nonnull Cart cart) {
         cart.show();
     }
+
+    /**
+     * Searches the cached catalog and displays the results within the player's cart.
+     *
+     * @param player a player.
+     * @param label  a command label.
+     * @param terms  a set of search terms.
+     */
+    private void search(@Nonnull Player player, @Nonnull String label, @Nonnull String[] terms) {
+        if (terms.length == 0) {
+            player.sendMessage(this.plugin.getLocalizationManager().get("command.buy.search.usage", label));
+            return;
+        }
+
+        CatalogIndex index = this.plugin.getCatalogIndex();
+
+        if (index == null) {
+            player.sendMessage(this.plugin.getLocalizationManager().get("command.buy.failure"));
+            return;
+        }
+
+        CatalogIndex.Result results = index.search(String.join(" ", terms));
+
+        if (results.isEmpty()) {
+            player.sendMessage(this.plugin.getLocalizationManager().get("command.buy.search.empty"));
+            return;
+        }
+
+        // existing carts are re-used in order to display the results without waiting on the API
+        Cart cart = this.plugin.getCartManager().getCart(player);
+
+        if (cart != null) {
+            cart.showResults(results);
+            cart.show();
+            return;
+        }
+
+        this.plugin.getCartManager().create(player, (c) -> {
+            c.showResults(results);
+            c.show();
+        }, () -> player.sendMessage(this.plugin.getLocalizationManager().get("command.buy.failure")));
+    }
 }
@@ -1,30 +1,45 @@
 package com.minepay.plugin.bukkit.command;
 
+import com.google.gson.stream.JsonReader;
+
 import com.minepay.plugin.bukkit.MinePayPlugin;
 import com.minepay.plugin.bukkit.command.annotation.CommandHandler;
+import com.minepay.plugin.bukkit.task.TickAverageTask;
+import com.minepay.plugin.bukkit.task.TickScheduler;
+import com.minepay.plugin.bukkit.telemetry.Counter;
 import com.minepay.plugin.bukkit.telemetry.DataPoint;
+import com.minepay.plugin.bukkit.telemetry.EndpointMetrics;
+import com.minepay.plugin.bukkit.telemetry.Gauge;
+import com.minepay.plugin.bukkit.telemetry.Histogram;
+import com.minepay.plugin.bukkit.telemetry.MetricRegistry;
 import com.minepay.plugin.bukkit.telemetry.Submission;
+import com.minepay.plugin.bukkit.telemetry.TelemetryHistory;
+import com.minepay.plugin.bukkit.telemetry.TimeSeries;
 
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Provides a command which allows its users to configure the plugin without restarting the server.
@@ -33,6 +48,10 @@ import javax.annotation.Nonnull;
  */
 public class ConfigurationCommandExecutor extends SimpleCommandExecutor {
     private final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM);
+    private final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final char[] CHART_CHARACTERS = {'\u2581', '\u2582', '\u2583', '\u2584', '\u2585', '\u2586', '\u2587', '\u2588'};
+    private static final int HISTORY_ENTRIES = 15;
+    private static final int CHART_WIDTH = 60;
     private final String METADATA_ENDPOINT_URL = "https://api.minepay.net/v1/metadata";
 
     public ConfigurationCommandExecutor(@Nonnull MinePayPlugin plugin) {
@@ -58,34 +77,31 @@ public class ConfigurationCommandExecutor extends SimpleCommandExecutor {
 
         Bukkit.getScheduler().scheduleAsyncDelayedTask(this.getPlugin(), () -> {
             try {
-                final JSONParser parser = new JSONParser();
                 HttpURLConnection connection = (HttpURLConnection) new URL(METADATA_ENDPOINT_URL).openConnection();
 
-                final JSONObject object;
-                final int responseCode = connection.getResponseCode();
+                final String storeName;
+                final int responseCode = this.getPlugin().getMetricRegistry().endpoint("metadata").execute(connection, null);
 
                 if (responseCode != 200) {
-                    object = null;
+                    storeName = null;
                 } else {
                     try (InputStream inputStream = connection.getInputStream()) {
-                        try (InputStreamReader reader = new InputStreamReader(inputStream)) {
-                            object = (JSONObject) parser.parse(reader);
+                        try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                            storeName = decodeStoreName(reader);
                         }
                     }
                 }
 
-                Bukkit.getScheduler().scheduleSyncDelayedTask(this.getPlugin(), () -> {
+                this.getPlugin().getTickScheduler().submit(TickScheduler.Priority.HIGH, () -> {
                     if (responseCode == 401 || responseCode == 403) {
                         sender.sendMessage(this.getPlugin().getLocalizationManager().get("command.minepay.serverid.invalid"));
                     } else if (responseCode >= 500) {
                         sender.sendMessage(this.getPlugin().getLocalizationManager().get("error.remote.unavailable"));
-                    } else if (responseCode != 200) {
+                    } else if (responseCode != 200 || storeName == null) {
                         sender.sendMessage(this.getPlugin().getLocalizationManager().get("error.remote.unknown"));
                     } else {
-                        JSONArray array = (JSONArray) object.get("stores");
-
                         this.getPlugin().getConfiguration().setServerId(arguments[0]);
-                        this.getPlugin().getConfiguration().setStoreName((String) array.get(0));
+                        this.getPlugin().getConfiguration().setStoreName(storeName);
 
                         this.getPlugin().enableFunctionality();
                         this.getPlugin().saveConfiguration();
@@ -93,15 +109,56 @@ public class ConfigurationCommandExecutor extends SimpleCommandExecutor {
                         this.printLocalized(sender, "configuration.serverId.success");
                     }
                 });
-            } catch (IOException | ParseException ex) {
+            } catch (IOException | IllegalStateException ex) {
                 sender.sendMessage(this.getPlugin().getLocalizationManager().get("error.remote.unknown"));
                 this.getPlugin().getLogger().log(Level.SEVERE, "Could not read and parse Minepay response: " + ex.getMessage(), ex);
             }
         });
     }
 
-    @CommandHandler(usage = "<opt-in|opt-out|enable|disable|latest>", subCommands = {"opt-in", "opt-out", "enable", "disable", "latest"})
+    /**
+     * Decodes the name of the first store associated with a server from its metadata.
+     *
+     * @param reader a reader positioned at the beginning of a metadata object.
+     * @return a store name or, if no store has been associated with the server, null.
+     *
+     * @throws IOException when reading or decoding fails.
+     */
+    @Nullable
+    private static String decodeStoreName(@Nonnull JsonReader reader) throws IOException {
+        String storeName = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"stores".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (storeName == null) {
+                    storeName = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+
+        return storeName;
+    }
+
+    @CommandHandler(usage = "<opt-in|opt-out|enable|disable|latest|history|chart> [metric] [second|minute|hour]", subCommands = {"opt-in", "opt-out", "enable", "disable", "latest", "history", "chart"})
     public void telemetry(@Nonnull CommandSender sender, @Nonnull Command command, @Nonnull String label, @Nonnull String[] arguments) {
+        switch (arguments[0].toLowerCase()) {
+            case "history":
+            case "chart":
+                this.printHistory(sender, arguments, "chart".equalsIgnoreCase(arguments[0]));
+                return;
+        }
+
         if (arguments.length != 1) {
             this.printLocalized(sender, "commands.arguments.many");
             return;
@@ -184,6 +241,171 @@ public class ConfigurationCommandExecutor extends SimpleCommandExecutor {
         }
     }
 
+    @CommandHandler(usage = "<all|prefix>")
+    public void metrics(@Nonnull CommandSender sender, @Nonnull Command command, @Nonnull String label, @Nonnull String[] arguments) {
+        if (arguments.length != 1) {
+            this.printLocalized(sender, "command.arguments.many");
+            return;
+        }
+
+        MetricRegistry registry = this.getPlugin().getMetricRegistry();
+        String prefix = ("all".equalsIgnoreCase(arguments[0]) ? "" : arguments[0]);
+        boolean empty = true;
+
+        for (Map.Entry<String, Counter> entry : registry.getCounters().entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                this.printLocalized(sender, "configuration.metrics.counter", entry.getKey(), entry.getValue().get());
+                empty = false;
+            }
+        }
+
+        for (Map.Entry<String, Gauge> entry : registry.getGauges().entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                this.printLocalized(sender, "configuration.metrics.gauge", entry.getKey(), entry.getValue().getValue());
+                empty = false;
+            }
+        }
+
+        // histograms record latencies in microseconds which are converted to milliseconds for
+        // the sake of readability
+        for (Map.Entry<String, Histogram> entry : registry.getHistograms().entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                Histogram histogram = entry.getValue();
+
+                this.printLocalized(sender, "configuration.metrics.histogram", entry.getKey(), histogram.getCount(), histogram.getMean() / 1000, histogram.getPercentile(0.5) / 1000.0, histogram.getPercentile(0.99) / 1000.0, histogram.getMaximum() / 1000.0);
+                empty = false;
+            }
+        }
+
+        if (empty) {
+            this.printLocalized(sender, "configuration.metrics.empty", arguments[0]);
+        }
+    }
+
+    @CommandHandler(usage = "<all|endpoint>")
+    public void status(@Nonnull CommandSender sender, @Nonnull Command command, @Nonnull String label, @Nonnull String[] arguments) {
+        if (arguments.length != 1) {
+            this.printLocalized(sender, "command.arguments.many");
+            return;
+        }
+
+        Map<String, EndpointMetrics> endpoints = this.getPlugin().getMetricRegistry().getEndpoints();
+        boolean all = "all".equalsIgnoreCase(arguments[0]);
+
+        if (!all && !endpoints.containsKey(arguments[0])) {
+            this.printLocalized(sender, "configuration.status.unknown", arguments[0], StringUtils.join(endpoints.keySet(), ", "));
+            return;
+        }
+
+        Histogram total = new Histogram();
+
+        for (Map.Entry<String, EndpointMetrics> entry : endpoints.entrySet()) {
+            if (!all && !entry.getKey().equals(arguments[0])) {
+                continue;
+            }
+
+            EndpointMetrics endpoint = entry.getValue();
+
+            this.printLatency(sender, entry.getKey(), endpoint.getLatency());
+            this.printLocalized(sender, "configuration.status.outcomes", endpoint.getStatusCount(2), endpoint.getStatusCount(3), endpoint.getStatusCount(4), endpoint.getStatusCount(5), endpoint.getFailureCount());
+
+            total.merge(endpoint.getLatency());
+        }
+
+        if (all) {
+            this.printLatency(sender, "all", total);
+        }
+    }
+
+    /**
+     * Prints the latency percentiles of an endpoint.
+     *
+     * @param sender  a command sender.
+     * @param name    an endpoint name.
+     * @param latency a latency histogram (in microseconds).
+     */
+    private void printLatency(@Nonnull CommandSender sender, @Nonnull String name, @Nonnull Histogram latency) {
+        this.printLocalized(sender, "configuration.status.latency", name, latency.getCount(), latency.getPercentile(0.5) / 1000.0, latency.getPercentile(0.99) / 1000.0, latency.getPercentile(0.999) / 1000.0, latency.getMaximum() / 1000.0);
+    }
+
+    /**
+     * Prints the local history of a telemetry metric either as a table or as a chart.
+     *
+     * @param sender    a command sender.
+     * @param arguments a set of arguments.
+     * @param chart     true if a chart is to be printed, false otherwise.
+     */
+    private void printHistory(@Nonnull CommandSender sender, @Nonnull String[] arguments, boolean chart) {
+        TelemetryHistory history = this.getPlugin().getTelemetryHistory();
+
+        if (arguments.length < 2 || arguments.length > 3) {
+            this.printLocalized(sender, "configuration.telemetry.history.metrics", StringUtils.join(history.getMetricNames(), ", "));
+            return;
+        }
+
+        TelemetryHistory.Resolution resolution = (arguments.length == 3 ? TelemetryHistory.Resolution.byName(arguments[2]) : TelemetryHistory.Resolution.MINUTE);
+
+        if (resolution == null) {
+            this.printLocalized(sender, "configuration.telemetry.history.resolution", arguments[2]);
+            return;
+        }
+
+        TimeSeries series = history.getSeries(arguments[1], resolution);
+
+        if (series == null) {
+            this.printLocalized(sender, "configuration.telemetry.history.unknown", arguments[1], StringUtils.join(history.getMetricNames(), ", "));
+            return;
+        }
+
+        List<Long> timestamps = new ArrayList<>();
+        List<float[]> values = new ArrayList<>();
+        series.forEach(System.currentTimeMillis(), (timestamp, minimum, maximum, average) -> {
+            timestamps.add(timestamp);
+            values.add(new float[]{minimum, average, maximum});
+        });
+
+        if (timestamps.isEmpty()) {
+            this.printLocalized(sender, "configuration.telemetry.history.no-data");
+            return;
+        }
+
+        int limit = (chart ? CHART_WIDTH : HISTORY_ENTRIES);
+        int offset = Math.max(0, timestamps.size() - limit);
+
+        String from = TIME_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamps.get(offset)), ZoneId.systemDefault()));
+        String to = TIME_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamps.get(timestamps.size() - 1)), ZoneId.systemDefault()));
+        this.printLocalized(sender, "configuration.telemetry.history.header", arguments[1], resolution.name().toLowerCase(), from, to);
+
+        if (!chart) {
+            for (int i = offset; i < timestamps.size(); ++i) {
+                float[] value = values.get(i);
+                String time = TIME_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamps.get(i)), ZoneId.systemDefault()));
+
+                this.printLocalized(sender, "configuration.telemetry.history.entry", time, value[0], value[1], value[2]);
+            }
+            return;
+        }
+
+        float minimum = Float.MAX_VALUE;
+        float maximum = -Float.MAX_VALUE;
+
+        for (int i = offset; i < values.size(); ++i) {
+            minimum = Math.min(minimum, values.get(i)[1]);
+            maximum = Math.max(maximum, values.get(i)[1]);
+        }
+
+        StringBuilder builder = new StringBuilder(ChatColor.GREEN.toString());
+        for (int i = offset; i < values.size(); ++i) {
+            float range = maximum - minimum;
+            int level = (range == 0 ? 0 : (int) ((values.get(i)[1] - minimum) / range * (CHART_CHARACTERS.length - 1)));
+
+            builder.append(CHART_CHARACTERS[level]);
+        }
+
+        sender.sendMessage(builder.toString());
+        this.printLocalized(sender, "configuration.telemetry.chart.range", minimum, maximum);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -198,7 +420,9 @@ public class ConfigurationCommandExecutor extends SimpleCommandExecutor {
 
         if (arguments.length == 0 && !this.getPlugin().getConfiguration().getServerId().isEmpty()) {
             this.printLocalized(sender, "command.minepay.state.serverId", StringUtils.overlay(this.getPlugin().getConfiguration().getServerId(), "******", (this.getPlugin().getConfiguration().getServerId().length() - 7), this.getPlugin().getConfiguration().getServerId().length()));
-            this.printLocalized(sender, "command.minepay.state.tps", this.getPlugin().getTickAverage());
+            this.printLocalized(sender, "command.minepay.state.tps", this.getPlugin().getTickAverage(TickAverageTask.Window.ONE_MINUTE), this.getPlugin().getTickAverage(TickAverageTask.Window.FIVE_MINUTES), this.getPlugin().getTickAverage(TickAverageTask.Window.FIFTEEN_MINUTES));
+            this.printLocalized(sender, "command.minepay.state.mspt", this.getPlugin().getTickTracker().getMedian(), this.getPlugin().getTickTracker().getPercentile95(), this.getPlugin().getTickTracker().getMaximum());
+            this.printLocalized(sender, "command.minepay.state.carts", this.getPlugin().getCartManager().getActiveCount(), this.getPlugin().getCartManager().getCreatedCount(), this.getPlugin().getCartManager().getExpiredCount(), this.getPlugin().getCartManager().getEvictedCount());
             this.printLocalized(sender, "command.minepay.state.telemetry." + (this.getPlugin().isTelemetryEnabled() ? "enabled" : "disabled"));
             sender.sendMessage("");
         }
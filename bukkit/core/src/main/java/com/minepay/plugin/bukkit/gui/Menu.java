@@ -1,11 +1,18 @@
 package com.minepay.plugin.bukkit.gui;
 
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
 
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 
 import javax.annotation.Nonnegative;
@@ -16,24 +23,49 @@ import javax.annotation.Signed;
  * Represents an active menu which is displayed on a player's screen in form of a container (such as
  * a chest).
  *
+ * Menus keep track of the icons which are currently displayed within their inventory and will only
+ * update slots whose icon has actually changed. Multiple modifications may be grouped using {@link
+ * #beginBatch()} and {@link #endBatch()} in which case the inventory is updated once the outermost
+ * batch ends.
+ *
+ * Each menu acts as the holder of its own inventory which permits events to be associated with
+ * their respective menu without any additional lookups.
+ *
  * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
  */
-public class Menu {
+public class Menu implements InventoryHolder {
     private final MenuManager manager;
     private final Player player;
     private final Inventory inventory;
     private final MenuItem[] items;
+    private final ItemStack[] displayed;
+    private final BitSet invalidated;
+    private final int[] pendingCounts;
+    private final TokenBucket clickBucket;
+    private int batchDepth;
+
+    public Menu(@Nonnull MenuManager manager, @Nonnull Player player, @Nonnegative int size) {
+        this(manager, player, InventoryType.CHEST.getDefaultTitle(), size);
+    }
 
-    public Menu(@Nonnull MenuManager manager, @Nonnull Player player, @Nonnull Inventory inventory) {
+    public Menu(@Nonnull MenuManager manager, @Nonnull Player player, @Nonnull String title, @Nonnegative int size) {
         this.manager = manager;
         this.player = player;
-        this.inventory = inventory;
+        this.inventory = Bukkit.createInventory(this, size, title);
 
-        this.items = new MenuItem[inventory.getSize()];
+        this.items = new MenuItem[this.inventory.getSize()];
+        this.displayed = new ItemStack[this.inventory.getSize()];
+        this.invalidated = new BitSet(this.inventory.getSize());
+        this.pendingCounts = new int[this.inventory.getSize()];
+        this.clickBucket = manager.createMenuBucket();
     }
 
+    /**
+     * {@inheritDoc}
+     */
     @Nonnull
-    Inventory getInventory() {
+    @Override
+    public Inventory getInventory() {
         return this.inventory;
     }
 
@@ -55,9 +87,56 @@ public class Menu {
 
         MenuItem item = this.items[slot];
 
-        if (item != null) {
-            item.onClick(action);
+        if (item != null && this.pendingCounts[slot] == 0) {
+            item.onClick(this, action);
+        }
+    }
+
+    /**
+     * Attempts to acquire permission for a click within this menu.
+     *
+     * @return true if permitted, false otherwise.
+     */
+    boolean tryAcquireClick() {
+        return this.clickBucket == null || this.clickBucket.tryAcquire();
+    }
+
+    /**
+     * Marks the slot which currently holds an item as in-progress until the specified future
+     * completes.
+     *
+     * While a slot is in-progress, all clicks on it are silently ignored. The state is tracked by
+     * slot rather than by item since menus may re-create their items at any time (for instance
+     * when a page is rendered again) and thus applies to any item which is placed in the slot
+     * until the future completes. Items which are not currently part of the menu are not marked.
+     *
+     * <strong>Note:</strong> The future is expected to complete on the server thread.
+     *
+     * @param item   an item.
+     * @param future a future.
+     * @param <T>    a result type.
+     * @return a future which completes once the slot has been released.
+     */
+    @Nonnull
+    public <T> CompletableFuture<T> await(@Nonnull MenuItem item, @Nonnull CompletableFuture<T> future) {
+        int slot = this.indexOf(item);
+
+        if (slot == -1 || future.isDone()) {
+            return future;
         }
+
+        ++this.pendingCounts[slot];
+        return future.whenComplete((result, ex) -> --this.pendingCounts[slot]);
+    }
+
+    /**
+     * Checks whether a slot is currently awaiting the completion of an action.
+     *
+     * @param slot a slot.
+     * @return true if pending, false otherwise.
+     */
+    public boolean isPending(@Nonnegative int slot) {
+        return this.pendingCounts[slot] != 0;
     }
 
     /**
@@ -77,7 +156,7 @@ public class Menu {
      */
     public void add(@Nonnegative int slot, @Nonnull MenuItem item) {
         this.items[slot] = item;
-        this.inventory.setItem(slot, item.getIcon());
+        this.invalidate(slot);
     }
 
     /**
@@ -102,26 +181,108 @@ public class Menu {
      */
     @Nonnull
     public MenuItem add(@Nonnegative int slot, @Nonnull ItemStack icon, @Nonnull BiConsumer<MenuItem, InventoryAction> handler) {
-        MenuItem item = new MenuItem(icon) {
+        MenuItem item = this.createItem(icon, handler);
+
+        this.add(slot, item);
+        return item;
+    }
+
+    /**
+     * Adds an item whose icon is loaded asynchronously using the default placeholder icon.
+     *
+     * @param slot    a slot number.
+     * @param icon    a future which provides the icon.
+     * @param handler a handler which is invoked once the icon has been loaded.
+     */
+    public void add(@Nonnegative int slot, @Nonnull CompletableFuture<ItemStack> icon, @Nonnull BiConsumer<MenuItem, InventoryAction> handler) {
+        this.add(slot, icon, this.manager.getPlaceholderIcon(), handler);
+    }
+
+    /**
+     * Adds an item whose icon is loaded asynchronously.
+     *
+     * The placeholder is displayed immediately and replaced on the server thread as soon as the
+     * future completes. When the future does not complete within the configured timeout or fails,
+     * the respective icon of the menu manager is displayed instead. Results which arrive after the
+     * timeout will still replace the timeout icon. Clicks on the placeholder, timeout and error
+     * icons are ignored.
+     *
+     * When the slot is re-populated before the future completes, its result is discarded.
+     *
+     * @param slot        a slot number.
+     * @param icon        a future which provides the icon.
+     * @param placeholder a placeholder icon.
+     * @param handler     a handler which is invoked once the icon has been loaded.
+     */
+    @SuppressWarnings("deprecation")
+    public void add(@Nonnegative int slot, @Nonnull CompletableFuture<ItemStack> icon, @Nonnull ItemStack placeholder, @Nonnull BiConsumer<MenuItem, InventoryAction> handler) {
+        final Plugin plugin = this.manager.getPlugin();
+        final MenuItem placeholderItem = new MenuItem(placeholder) {
+        };
+        final MenuItem timeoutItem = new MenuItem(this.manager.getTimeoutIcon()) {
+        };
+
+        // futures which have already completed are inserted right away in order to avoid a
+        // visible placeholder
+        if (icon.isDone() && !icon.isCompletedExceptionally()) {
+            this.add(slot, icon.join(), handler);
+            return;
+        }
+
+        this.add(slot, placeholderItem);
+
+        final int timeoutTaskId = plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, () -> {
+            if (this.items[slot] == placeholderItem) {
+                this.add(slot, timeoutItem);
+            }
+        }, this.manager.getAsyncTimeout());
+
+        icon.whenComplete((result, ex) -> this.manager.getSyncExecutor().execute(() -> {
+            plugin.getServer().getScheduler().cancelTask(timeoutTaskId);
+
+            if (this.items[slot] != placeholderItem && this.items[slot] != timeoutItem) {
+                return;
+            }
+
+            if (ex != null || result == null) {
+                this.add(slot, new MenuItem(this.manager.getErrorIcon()) {
+                });
+            } else {
+                this.add(slot, result, handler);
+            }
+        }));
+    }
+
+    /**
+     * Creates a new menu item without adding it to the menu.
+     *
+     * @param icon    an icon.
+     * @param handler a handler.
+     * @return a menu item.
+     */
+    @Nonnull
+    protected MenuItem createItem(@Nonnull ItemStack icon, @Nonnull BiConsumer<MenuItem, InventoryAction> handler) {
+        return new MenuItem(icon) {
             @Override
             public void onClick(@Nonnull InventoryAction action) {
                 handler.accept(this, action);
             }
         };
-
-        this.add(slot, item);
-        return item;
     }
 
     /**
      * Clears the entire menu.
+     *
+     * <strong>Note:</strong> When invoked within a batch, the inventory is left untouched until
+     * the batch ends which permits slots to be re-populated without any visible updates.
      */
     public void clear() {
         for (int i = 0; i < this.items.length; i++) {
             this.items[i] = null;
         }
 
-        this.inventory.clear();
+        this.invalidated.set(0, this.items.length);
+        this.flushIfIdle();
     }
 
     /**
@@ -131,16 +292,100 @@ public class Menu {
      */
     public void clear(@Nonnegative int slot) {
         this.items[slot] = null;
-        this.inventory.setItem(slot, null);
+        this.invalidate(slot);
+    }
+
+    /**
+     * Applies a pre-compiled layout on top of the current menu contents.
+     *
+     * Slots which are left empty within the layout retain their current item.
+     *
+     * @param layout a layout.
+     */
+    public void apply(@Nonnull MenuLayout layout) {
+        if (layout.getSize() != this.items.length) {
+            throw new IllegalArgumentException("Layout of size " + layout.getSize() + " cannot be applied to menu of size " + this.items.length);
+        }
+
+        for (int slot : layout.getSlots()) {
+            this.items[slot] = layout.getItem(slot);
+            this.invalidated.set(slot);
+        }
+
+        this.flushIfIdle();
+    }
+
+    /**
+     * Begins a batch of modifications.
+     *
+     * Until the matching call to {@link #endBatch()}, modifications are only recorded and the
+     * inventory is left untouched. Batches may be nested.
+     */
+    public void beginBatch() {
+        ++this.batchDepth;
+    }
+
+    /**
+     * Ends a batch of modifications and updates all changed slots once the outermost batch has
+     * ended.
+     */
+    public void endBatch() {
+        if (this.batchDepth == 0) {
+            throw new IllegalStateException("No batch in progress");
+        }
+
+        --this.batchDepth;
+        this.flushIfIdle();
+    }
+
+    /**
+     * Marks a slot as changed and updates it immediately unless a batch is in progress.
+     *
+     * @param slot a slot.
+     */
+    private void invalidate(@Nonnegative int slot) {
+        this.invalidated.set(slot);
+        this.flushIfIdle();
+    }
+
+    /**
+     * Flushes all pending changes unless a batch is in progress.
+     */
+    private void flushIfIdle() {
+        if (this.batchDepth == 0) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Pushes all changed slots to the inventory.
+     *
+     * Slots which display an icon equal to the one which is already displayed are skipped
+     * entirely in order to avoid sending redundant slot updates to the client.
+     */
+    public void flush() {
+        for (int slot = this.invalidated.nextSetBit(0); slot != -1; slot = this.invalidated.nextSetBit(slot + 1)) {
+            MenuItem item = this.items[slot];
+            ItemStack icon = (item == null ? null : item.getIcon());
+
+            if (this.displayed[slot] == icon || Objects.equals(this.displayed[slot], icon)) {
+                continue;
+            }
+
+            // icons are copied since callers may still modify their instance after it has been
+            // handed to the menu (layout prototypes are immutable and thus safe to reference)
+            this.displayed[slot] = (icon == null || item instanceof MenuLayout.Entry ? icon : icon.clone());
+            this.inventory.setItem(slot, icon);
+        }
+
+        this.invalidated.clear();
     }
 
     /**
      * Closes the menu.
      */
     public void close() {
-        this.manager.destroy(this.inventory);
-
-        if (this.player.getInventory() == this.inventory) {
+        if (this.player.getOpenInventory().getTopInventory().getHolder() == this) {
             this.player.closeInventory();
         }
     }
@@ -189,6 +434,7 @@ public class Menu {
      * Displays the menu on-screen for the current player.
      */
     public void show() {
+        this.manager.getOpenedCounter().increment();
         this.player.openInventory(this.inventory);
     }
 }
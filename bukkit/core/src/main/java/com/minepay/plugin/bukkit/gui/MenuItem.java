@@ -34,4 +34,17 @@ public abstract class MenuItem {
      */
     public void onClick(@Nonnull InventoryAction action) {
     }
+
+    /**
+     * Handles the invocation of this menu item within a certain menu.
+     *
+     * Items which may be shared between multiple menus should override this method in order to
+     * act upon the correct menu.
+     *
+     * @param menu   a menu.
+     * @param action an action type.
+     */
+    public void onClick(@Nonnull Menu menu, @Nonnull InventoryAction action) {
+        this.onClick(action);
+    }
 }
@@ -0,0 +1,173 @@
+package com.minepay.plugin.bukkit.gui;
+
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Represents an immutable, pre-compiled arrangement of menu items which may be shared between an
+ * arbitrary amount of menus.
+ *
+ * Layouts are declared once using a {@link Builder} and compiled into a flat slot table. Each slot
+ * refers to a shared icon prototype along with a handler which receives the menu it has been
+ * invoked in. Applying a layout to a menu thus merely copies references while per-player
+ * modifications may be applied on top of the layout afterwards.
+ *
+ * <strong>Note:</strong> Icon prototypes must not be modified once a layout has been built.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public final class MenuLayout {
+    private final int size;
+    private final MenuItem[] items;
+    private final int[] slots;
+
+    private MenuLayout(@Nonnegative int size, @Nonnull MenuItem[] items, @Nonnull int[] slots) {
+        this.size = size;
+        this.items = items;
+        this.slots = slots;
+    }
+
+    /**
+     * Creates a new builder for a layout of the specified size.
+     *
+     * @param size a menu size.
+     * @return a builder.
+     */
+    @Nonnull
+    public static Builder builder(@Nonnegative int size) {
+        return new Builder(size);
+    }
+
+    /**
+     * Retrieves the size of the menus this layout is designed for.
+     *
+     * @return a size.
+     */
+    @Nonnegative
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Retrieves the item which occupies a certain slot.
+     *
+     * @param slot a slot.
+     * @return an item or, if the slot is left empty, null.
+     */
+    @Nullable
+    MenuItem getItem(@Nonnegative int slot) {
+        return this.items[slot];
+    }
+
+    /**
+     * Retrieves the indices of all slots which are occupied within this layout.
+     *
+     * @return an array of slot indices.
+     */
+    @Nonnull
+    int[] getSlots() {
+        return this.slots;
+    }
+
+    /**
+     * Handles clicks on a slot within a layout.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Handles a click on a layout item.
+         *
+         * @param menu   the menu the click occurred in.
+         * @param item   the clicked item.
+         * @param action an action type.
+         */
+        void onClick(@Nonnull Menu menu, @Nonnull MenuItem item, @Nonnull InventoryAction action);
+    }
+
+    /**
+     * Represents a menu item which is shared between all menus a layout is applied to.
+     */
+    static final class Entry extends MenuItem {
+        private final Handler handler;
+
+        private Entry(@Nonnull ItemStack icon, @Nonnull Handler handler) {
+            super(icon);
+            this.handler = handler;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onClick(@Nonnull Menu menu, @Nonnull InventoryAction action) {
+            this.handler.onClick(menu, this, action);
+        }
+    }
+
+    /**
+     * Provides a factory for layouts.
+     */
+    public static final class Builder {
+        private final MenuItem[] items;
+
+        private Builder(@Nonnegative int size) {
+            this.items = new MenuItem[size];
+        }
+
+        /**
+         * Places an icon without any associated action.
+         *
+         * @param slot a slot.
+         * @param icon an icon.
+         * @return a reference to this builder.
+         */
+        @Nonnull
+        public Builder set(@Nonnegative int slot, @Nonnull ItemStack icon) {
+            return this.set(slot, icon, (m, i, a) -> {
+            });
+        }
+
+        /**
+         * Places an icon along with a handler.
+         *
+         * @param slot    a slot.
+         * @param icon    an icon.
+         * @param handler a handler.
+         * @return a reference to this builder.
+         */
+        @Nonnull
+        public Builder set(@Nonnegative int slot, @Nonnull ItemStack icon, @Nonnull Handler handler) {
+            // the icon is copied in order to decouple the prototype from the caller's instance
+            this.items[slot] = new Entry(icon.clone(), handler);
+            return this;
+        }
+
+        /**
+         * Compiles the declared slots into an immutable layout.
+         *
+         * @return a layout.
+         */
+        @Nonnull
+        public MenuLayout build() {
+            int[] slots = new int[this.items.length];
+            int count = 0;
+
+            for (int i = 0; i < this.items.length; ++i) {
+                if (this.items[i] != null) {
+                    slots[count++] = i;
+                }
+            }
+
+            return new MenuLayout(this.items.length, this.items.clone(), Arrays.copyOf(slots, count));
+        }
+    }
+}
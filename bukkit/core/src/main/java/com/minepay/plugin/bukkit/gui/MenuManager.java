@@ -1,6 +1,9 @@
 package com.minepay.plugin.bukkit.gui;
 
-import org.bukkit.Bukkit;
+import com.minepay.plugin.bukkit.telemetry.Counter;
+import com.minepay.plugin.bukkit.telemetry.MetricRegistry;
+
+import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -8,21 +11,174 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Handles the lifecycle of container based menus.
  *
+ * Clicks are rate limited on a per-player as well as a per-menu basis in order to prevent
+ * automated clicking from triggering an unbounded amount of actions. A rate of zero disables the
+ * respective limit.
+ *
  * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
  */
 public class MenuManager implements Listener {
-    private final Map<Inventory, Menu> menuMap = new HashMap<>();
+    private final Plugin plugin;
+    private final Counter openedCounter;
+    private final Counter clickCounter;
+    private final Counter throttledClickCounter;
+    private final Map<UUID, TokenBucket> playerBuckets = new HashMap<>();
+    private ItemStack placeholderIcon = new ItemStack(Material.STAINED_GLASS_PANE, 1, (short) 8);
+    private ItemStack timeoutIcon = new ItemStack(Material.STAINED_GLASS_PANE, 1, (short) 4);
+    private ItemStack errorIcon = new ItemStack(Material.STAINED_GLASS_PANE, 1, (short) 14);
+    private long asyncTimeout = 100;
+    private int playerClickRate = 10;
+    private int playerClickBurst = 10;
+    private int menuClickRate = 5;
+    private int menuClickBurst = 5;
+    private Executor syncExecutor;
+
+    @SuppressWarnings("deprecation")
+    public MenuManager(@Nonnull Plugin plugin, @Nonnull MetricRegistry metricRegistry) {
+        this.plugin = plugin;
+        this.syncExecutor = (task) -> plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, task);
+        this.openedCounter = metricRegistry.counter("menu.opened");
+        this.clickCounter = metricRegistry.counter("menu.clicks");
+        this.throttledClickCounter = metricRegistry.counter("menu.clicks.throttled");
+    }
+
+    @Nonnull
+    Plugin getPlugin() {
+        return this.plugin;
+    }
+
+    @Nonnull
+    Counter getOpenedCounter() {
+        return this.openedCounter;
+    }
+
+    @Nonnull
+    public ItemStack getPlaceholderIcon() {
+        return this.placeholderIcon;
+    }
+
+    public void setPlaceholderIcon(@Nonnull ItemStack placeholderIcon) {
+        this.placeholderIcon = placeholderIcon;
+    }
+
+    @Nonnull
+    public ItemStack getTimeoutIcon() {
+        return this.timeoutIcon;
+    }
+
+    public void setTimeoutIcon(@Nonnull ItemStack timeoutIcon) {
+        this.timeoutIcon = timeoutIcon;
+    }
+
+    @Nonnull
+    public ItemStack getErrorIcon() {
+        return this.errorIcon;
+    }
+
+    public void setErrorIcon(@Nonnull ItemStack errorIcon) {
+        this.errorIcon = errorIcon;
+    }
+
+    /**
+     * Retrieves the amount of ticks after which asynchronously loaded items are considered to have
+     * timed out.
+     *
+     * @return an amount of ticks.
+     */
+    @Nonnegative
+    public long getAsyncTimeout() {
+        return this.asyncTimeout;
+    }
+
+    public void setAsyncTimeout(@Nonnegative long asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    /**
+     * Retrieves the executor which passes the results of asynchronously loaded items to the
+     * server thread.
+     *
+     * @return an executor.
+     */
+    @Nonnull
+    public Executor getSyncExecutor() {
+        return this.syncExecutor;
+    }
+
+    public void setSyncExecutor(@Nonnull Executor syncExecutor) {
+        this.syncExecutor = syncExecutor;
+    }
+
+    /**
+     * Adjusts the amount of clicks a single player may perform.
+     *
+     * @param rate  an amount of clicks per second.
+     * @param burst an amount of clicks which may be performed in rapid succession.
+     */
+    public void setPlayerClickRate(@Nonnegative int rate, @Nonnegative int burst) {
+        this.playerClickRate = rate;
+        this.playerClickBurst = burst;
+        this.playerBuckets.clear();
+    }
+
+    /**
+     * Adjusts the amount of clicks a single menu accepts.
+     *
+     * <strong>Note:</strong> Menus which have already been created retain their previous limit.
+     *
+     * @param rate  an amount of clicks per second.
+     * @param burst an amount of clicks which may be performed in rapid succession.
+     */
+    public void setMenuClickRate(@Nonnegative int rate, @Nonnegative int burst) {
+        this.menuClickRate = rate;
+        this.menuClickBurst = burst;
+    }
+
+    /**
+     * Creates a new token bucket for use by a newly created menu.
+     *
+     * @return a bucket or, if menu clicks are not to be limited, null.
+     */
+    @Nullable
+    TokenBucket createMenuBucket() {
+        if (this.menuClickRate == 0) {
+            return null;
+        }
+
+        return new TokenBucket(this.menuClickRate, this.menuClickBurst);
+    }
+
+    /**
+     * Attempts to acquire permission for a click by the specified player.
+     *
+     * @param playerId a player identifier.
+     * @return true if permitted, false otherwise.
+     */
+    private boolean tryAcquire(@Nonnull UUID playerId) {
+        if (this.playerClickRate == 0) {
+            return true;
+        }
+
+        return this.playerBuckets.computeIfAbsent(playerId, (id) -> new TokenBucket(this.playerClickRate, this.playerClickBurst)).tryAcquire();
+    }
 
     /**
      * Creates a managed menu utilizing the specified size.
@@ -35,7 +191,7 @@ public class MenuManager implements Listener {
      */
     @Nonnull
     public Menu create(@Nonnull Player player, @Nonnegative int size) {
-        return this.create(player, Bukkit.createInventory(player, size));
+        return new Menu(this, player, size);
     }
 
     /**
@@ -50,39 +206,24 @@ public class MenuManager implements Listener {
      */
     @Nonnull
     public Menu create(@Nonnull Player player, @Nonnull String title, @Nonnegative int size) {
-        return this.create(player, Bukkit.createInventory(player, size, title));
+        return new Menu(this, player, title, size);
     }
 
     /**
-     * Creates a managed menu utilizing an existing menu.
+     * Resolves the menu an inventory belongs to.
      *
-     * @param player    a player.
      * @param inventory an inventory.
-     * @return a menu.
+     * @return a menu or, if the inventory is not part of a menu, null.
      */
-    @Nonnull
-    public Menu create(@Nonnull Player player, @Nonnull Inventory inventory) {
-        Menu menu = new Menu(this, player, inventory);
-        this.add(menu);
-        return menu;
-    }
+    @Nullable
+    private static Menu getMenu(@Nonnull Inventory inventory) {
+        InventoryHolder holder = inventory.getHolder();
 
-    /**
-     * Adds a menu to the manager.
-     *
-     * @param menu a menu.
-     */
-    public void add(@Nonnull Menu menu) {
-        this.menuMap.put(menu.getInventory(), menu);
-    }
+        if (!(holder instanceof Menu)) {
+            return null;
+        }
 
-    /**
-     * Destroys a menu item completely.
-     *
-     * @param inventory an inventory.
-     */
-    void destroy(@Nonnull Inventory inventory) {
-        this.menuMap.remove(inventory);
+        return (Menu) holder;
     }
 
     /**
@@ -92,33 +233,54 @@ public class MenuManager implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onInventoryClick(@Nonnull InventoryClickEvent event) {
-        Menu menu = this.menuMap.get(event.getInventory());
+        Menu menu = getMenu(event.getInventory());
 
-        if (menu != null) {
-            event.setCancelled(true);
-            menu.onClick(event.getSlot(), event.getAction());
+        if (menu == null) {
+            return;
+        }
+
+        // clicks within the player inventory are cancelled as well in order to prevent items from
+        // being moved into the menu but are not passed on since they do not refer to a menu slot
+        event.setCancelled(true);
+
+        int slot = event.getRawSlot();
+        if (slot < 0 || slot >= menu.getSize()) {
+            return;
+        }
+
+        this.clickCounter.increment();
+
+        if (this.tryAcquire(event.getWhoClicked().getUniqueId()) && menu.tryAcquireClick()) {
+            menu.onClick(slot, event.getAction());
+        } else {
+            this.throttledClickCounter.increment();
         }
     }
 
     /**
-     * Handles inventory close events, passes them on to their respective menus and frees the memory
-     * associated with said menu.
+     * Handles inventory close events and passes them on to their respective menus.
      *
      * @param event an event.
      */
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onInventoryClose(@Nonnull InventoryCloseEvent event) {
-        Menu menu = this.menuMap.get(event.getInventory());
-
-        if (menu != null) {
-            if (!menu.onClose()) {
-                event.getPlayer().openInventory(event.getInventory());
-            } else {
-                this.menuMap.remove(event.getInventory());
-            }
+        Menu menu = getMenu(event.getInventory());
+
+        if (menu != null && !menu.onClose()) {
+            event.getPlayer().openInventory(event.getInventory());
         }
     }
 
+    /**
+     * Discards the click limits of disconnecting players.
+     *
+     * @param event an event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(@Nonnull PlayerQuitEvent event) {
+        this.playerBuckets.remove(event.getPlayer().getUniqueId());
+    }
+
     /**
      * Cancels drag interactions in menus.
      *
@@ -126,7 +288,7 @@ public class MenuManager implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onInventoryDrag(@Nonnull InventoryDragEvent event) {
-        if (this.menuMap.containsKey(event.getInventory())) {
+        if (getMenu(event.getInventory()) != null) {
             event.setCancelled(true);
         }
     }
@@ -0,0 +1,192 @@
+package com.minepay.plugin.bukkit.gui;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.inventory.ItemStack;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Represents a menu which splits an arbitrary amount of entries into pages of fixed size.
+ *
+ * The last row of the inventory is reserved for controls while the remaining rows display the
+ * entries of the current page. Entries are only constructed when their page is rendered.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public abstract class PagedMenu extends Menu {
+    public static final int MAXIMUM_CONTENT_ROWS = 5;
+    public static final int PREVIOUS_PAGE_SLOT_OFFSET = 6;
+    public static final int NEXT_PAGE_SLOT_OFFSET = 4;
+    private int page;
+
+    public PagedMenu(@Nonnull MenuManager manager, @Nonnull Player player, @Nonnull String title, @Nonnegative int size) {
+        super(manager, player, title, size);
+
+        if (size < 18 || (size % 9) != 0) {
+            throw new IllegalArgumentException("Paged menus require an inventory of at least two rows but got " + size + " slots");
+        }
+    }
+
+    /**
+     * Calculates the inventory size which is required in order to display the specified amount of
+     * entries (including the control row).
+     *
+     * @param entries an amount of entries.
+     * @return an inventory size.
+     */
+    @Nonnegative
+    public static int calculateSize(@Nonnegative int entries) {
+        int rows = Math.max(1, Math.min(MAXIMUM_CONTENT_ROWS, (entries + 8) / 9));
+        return (rows + 1) * 9;
+    }
+
+    /**
+     * Retrieves the index of the page which is currently displayed.
+     *
+     * @return a page index.
+     */
+    @Nonnegative
+    public int getPage() {
+        return this.page;
+    }
+
+    /**
+     * Retrieves the total amount of pages.
+     *
+     * @return an amount of pages.
+     */
+    @Nonnegative
+    public int getPageCount() {
+        return Math.max(1, (this.getEntryCount() + this.getPageSize() - 1) / this.getPageSize());
+    }
+
+    /**
+     * Retrieves the amount of entries displayed on a single page.
+     *
+     * @return an amount of entries.
+     */
+    @Nonnegative
+    public int getPageSize() {
+        return this.getSize() - 9;
+    }
+
+    /**
+     * Switches to a certain page and renders it.
+     *
+     * @param page a page index.
+     */
+    public void setPage(@Nonnegative int page) {
+        this.page = Math.max(0, Math.min(page, this.getPageCount() - 1));
+        this.render();
+    }
+
+    /**
+     * (Re-)renders the current page.
+     */
+    public void render() {
+        // the amount of entries may have changed since the page has been selected
+        this.page = Math.min(this.page, this.getPageCount() - 1);
+
+        this.beginBatch();
+        try {
+            this.clear();
+
+            MenuLayout layout = this.getPageLayout(this.page);
+
+            if (layout != null) {
+                this.apply(layout);
+            } else {
+                this.populatePage();
+            }
+
+            this.populateControls();
+        } finally {
+            this.endBatch();
+        }
+    }
+
+    /**
+     * Populates the current page with its entries and navigation buttons.
+     */
+    private void populatePage() {
+        int offset = this.page * this.getPageSize();
+        int end = Math.min(this.getEntryCount(), offset + this.getPageSize());
+
+        for (int i = offset; i < end; ++i) {
+            MenuItem item = this.createEntry(i);
+
+            if (item != null) {
+                this.add(i - offset, item);
+            }
+        }
+
+        if (this.page > 0) {
+            this.add(this.getSize() - PREVIOUS_PAGE_SLOT_OFFSET, this.createPageIcon(this.page - 1, false), (m, a) -> {
+                if (a == InventoryAction.PICKUP_ALL) {
+                    this.setPage(this.page - 1);
+                }
+            });
+        }
+
+        if (this.page + 1 < this.getPageCount()) {
+            this.add(this.getSize() - NEXT_PAGE_SLOT_OFFSET, this.createPageIcon(this.page + 1, true), (m, a) -> {
+                if (a == InventoryAction.PICKUP_ALL) {
+                    this.setPage(this.page + 1);
+                }
+            });
+        }
+    }
+
+    /**
+     * Retrieves a pre-compiled layout for a certain page.
+     *
+     * When a layout is returned, it replaces the entries as well as the navigation buttons of
+     * the page entirely while controls are still populated on top of it.
+     *
+     * @param page a page index.
+     * @return a layout or, if the page is to be populated from its entries, null.
+     */
+    @Nullable
+    protected MenuLayout getPageLayout(@Nonnegative int page) {
+        return null;
+    }
+
+    /**
+     * Retrieves the total amount of entries within this menu.
+     *
+     * @return an amount of entries.
+     */
+    @Nonnegative
+    protected abstract int getEntryCount();
+
+    /**
+     * Constructs the menu item for a certain entry.
+     *
+     * @param index an entry index.
+     * @return a menu item or, if the slot is to be left empty, null.
+     */
+    @Nullable
+    protected abstract MenuItem createEntry(@Nonnegative int index);
+
+    /**
+     * Populates the control row with additional buttons.
+     */
+    protected void populateControls() {
+    }
+
+    /**
+     * Creates the icon which is used for navigating to a certain page.
+     *
+     * @param page a target page index.
+     * @param next true if the icon navigates forward, false otherwise.
+     * @return an item stack.
+     */
+    @Nonnull
+    protected ItemStack createPageIcon(@Nonnegative int page, boolean next) {
+        return new ItemStack(Material.ARROW, Math.min(64, page + 1));
+    }
+}
@@ -0,0 +1,49 @@
+package com.minepay.plugin.bukkit.gui;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Provides a simple token bucket which permits a certain amount of actions per second while
+ * allowing short bursts of up to its capacity.
+ *
+ * Buckets are refilled lazily whenever a token is requested and thus do not require any
+ * background tasks.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@NotThreadSafe
+public final class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(@Nonnegative int rate, @Nonnegative int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.tokensPerNano = (double) rate / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Attempts to take a single token from the bucket.
+     *
+     * @return true if a token was available, false otherwise.
+     */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefill) * this.tokensPerNano);
+        this.lastRefill = now;
+
+        if (this.tokens < 1) {
+            return false;
+        }
+
+        --this.tokens;
+        return true;
+    }
+}
@@ -1,147 +1,457 @@
 package com.minepay.plugin.bukkit.storefront;
 
+import com.google.gson.stream.JsonReader;
+
 import com.minepay.plugin.bukkit.MinePayPlugin;
-import com.minepay.plugin.bukkit.gui.Menu;
+import com.minepay.plugin.bukkit.gui.MenuItem;
+import com.minepay.plugin.bukkit.gui.MenuLayout;
+import com.minepay.plugin.bukkit.gui.PagedMenu;
+import com.minepay.plugin.bukkit.task.TickScheduler;
 
 import org.bukkit.Bukkit;
-import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryAction;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Represents a cart which has been introduced to the Minepay servers for a user.
  *
  * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
  */
-public class Cart extends Menu {
+public class Cart extends PagedMenu {
     private static final String CART_ADD_ENDPOINT_URL = "https://api.minepay.net/v1/store/%s/cart/%s";
     private static final String CART_INFORMATION_ENDPOINT_URL = "https://api.minepay.net/v1/store/%s/cart/%s";
+    private static final String CART_CHECKOUT_ENDPOINT_URL = "https://api.minepay.net/v1/store/%s/checkout/%s";
 
     private final MinePayPlugin plugin;
     private final UUID cartId;
     private final List<Category> categories;
-    private boolean selectedItem;
+    private final Map<String, CompletableFuture<?>> operations = new HashMap<>();
+    private final Set<Long> selection = new LinkedHashSet<>();
     private Category category;
+    private CatalogIndex.Result results;
+    private State state = State.OPEN;
+    private volatile long lastAccess = System.nanoTime();
 
-    public Cart(@Nonnull MinePayPlugin plugin, @Nonnull Player player, @Nonnull UUID cartId, @Nonnull List<Category> categories) {
-        super(plugin.getMenuManager(), player, Bukkit.createInventory(player, (categories.size() / 9) + 1, plugin.getLocalizationManager().get("command.buy.title")));
+    /**
+     * Constructs a new cart.
+     *
+     * @param plugin     a plugin instance.
+     * @param player     a player.
+     * @param cartId     a remote cart identifier or, if the selection is to be kept locally and
+     *                   submitted in a single batch upon checkout, null.
+     * @param categories a list of categories.
+     */
+    public Cart(@Nonnull MinePayPlugin plugin, @Nonnull Player player, @Nullable UUID cartId, @Nonnull List<Category> categories) {
+        super(plugin.getMenuManager(), player, plugin.getLocalizationManager().get("command.buy.title"), calculateSize(categories));
         this.plugin = plugin;
         this.cartId = cartId;
         this.categories = categories;
 
-        this.buildInterface();
+        this.render();
     }
 
     /**
-     * (Re-)builds the entire interface.
+     * Calculates the inventory size required to display the largest view of a catalog.
+     *
+     * @param categories a list of categories.
+     * @return an inventory size.
      */
-    private void buildInterface() {
-        this.clear();
-        {
-            if (this.category == null) {
-                int i = 0;
+    private static int calculateSize(@Nonnull List<Category> categories) {
+        int entries = categories.size();
 
-                for (Category category : this.categories) {
-                    this.add(i, category.getIcon(this.plugin.getLocalizationManager()), (m, a) -> this.selectCategory(category));
+        for (Category category : categories) {
+            entries = Math.max(entries, category.getPackages().size());
+        }
 
-                    ++i;
-                }
-            } else {
-                int i = 0;
+        return calculateSize(entries);
+    }
 
-                for (Package pkg : this.category.getPackages()) {
-                    this.add(i, pkg.getIcon(this.plugin.getLocalizationManager()), (m, a) -> this.selectPackage(pkg));
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getEntryCount() {
+        if (this.category != null) {
+            return this.category.getPackages().size();
+        }
 
-                    ++i;
-                }
+        if (this.results != null) {
+            return this.results.size();
+        }
+
+        return this.categories.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nonnull
+    @Override
+    protected MenuItem createEntry(int index) {
+        final Package pkg;
+
+        if (this.category != null) {
+            pkg = this.category.getPackages().get(index);
+        } else if (this.results != null) {
+            if (index < this.results.getCategories().size()) {
+                return this.createCategoryEntry(this.results.getCategories().get(index));
             }
+
+            pkg = this.results.getPackages().get(index - this.results.getCategories().size());
+        } else {
+            return this.createCategoryEntry(this.categories.get(index));
         }
-        this.populateMenuButtons();
+
+        ItemStack icon = this.plugin.getIconCache().getIcon(pkg);
+
+        if (this.selection.contains(pkg.getId())) {
+            ItemMeta meta = icon.getItemMeta();
+            List<String> lore = (meta.hasLore() ? new ArrayList<>(meta.getLore()) : new ArrayList<>());
+            lore.add(this.plugin.getLocalizationManager().get("command.buy.selected"));
+            meta.setLore(lore);
+            icon.setItemMeta(meta);
+        }
+
+        return this.createItem(icon, (m, a) -> this.selectPackage(m, pkg));
     }
 
     /**
-     * Confirms the submission of a cart.
+     * Creates the menu item for a certain category.
+     *
+     * @param category a category.
+     * @return a menu item.
      */
-    @SuppressWarnings("deprecation")
-    private void confirm() {
-        Bukkit.getScheduler().scheduleAsyncDelayedTask(this.plugin, () -> {
-            final JSONParser parser = new JSONParser();
+    @Nonnull
+    private MenuItem createCategoryEntry(@Nonnull Category category) {
+        return this.createItem(this.plugin.getIconCache().getIcon(category), (m, a) -> this.selectCategory(category));
+    }
 
-            try {
-                HttpURLConnection connection = (HttpURLConnection) new URL(String.format(CART_INFORMATION_ENDPOINT_URL, this.plugin.getConfiguration().getStoreName(), this.cartId)).openConnection();
+    /**
+     * {@inheritDoc}
+     */
+    @Nonnull
+    @Override
+    protected ItemStack createPageIcon(int page, boolean next) {
+        return this.plugin.getCartLayouts().createPageIcon(page, this.getPageCount(), next);
+    }
 
-                try (InputStream inputStream = connection.getInputStream()) {
-                    try (InputStreamReader reader = new InputStreamReader(inputStream)) {
-                        final JSONObject object = (JSONObject) parser.parse(reader);
-                        final CartResponse.Information information = new CartResponse.Information(object);
+    /**
+     * Retrieves the current cart state.
+     *
+     * @return a state.
+     */
+    @Nonnull
+    public State getState() {
+        return this.state;
+    }
 
-                        Bukkit.getScheduler().scheduleSyncDelayedTask(this.plugin, () -> {
-                            this.close();
-                            this.plugin.getCartManager().destroy(this.getPlayer());
+    /**
+     * Retrieves the time of the last interaction with this cart.
+     *
+     * @return a timestamp as reported by {@link System#nanoTime()}.
+     */
+    public long getLastAccess() {
+        return this.lastAccess;
+    }
 
-                            this.getPlayer().sendMessage(this.plugin.getLocalizationManager().get("command.buy.confirm.response", information.getUrl()));
-                        });
-                    }
-                }
-            } catch (IOException | ParseException ex) {
-                // TODO: Proper error handling
-                this.getPlayer().sendMessage(this.plugin.getLocalizationManager().get("command.buy.failure"));
-                ex.printStackTrace();
+    /**
+     * Marks this cart as recently used.
+     */
+    public void touch() {
+        this.lastAccess = System.nanoTime();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onClick(int slot, @Nonnull InventoryAction action) {
+        this.touch();
+        super.onClick(slot, action);
+    }
+
+    /**
+     * Checks whether this cart accumulates its selection locally and submits it as a single batch
+     * upon checkout.
+     *
+     * @return true if batched, false otherwise.
+     */
+    public boolean isBatched() {
+        return this.cartId == null;
+    }
+
+    /**
+     * Retrieves the identifiers of all packages which have been selected.
+     *
+     * @return a set of package identifiers.
+     */
+    @Nonnull
+    public Set<Long> getSelection() {
+        return Collections.unmodifiableSet(this.selection);
+    }
+
+    /**
+     * Adds a package to the cart.
+     *
+     * Batched carts will only record the package locally. Otherwise, the package is added to the
+     * remote cart and, when an identical request is already in flight, its future is returned
+     * instead of issuing a new request. The returned future is always completed on the server
+     * thread.
+     *
+     * @param pkg a package.
+     * @return a future.
+     */
+    @Nonnull
+    public CompletableFuture<Void> addPackage(@Nonnull Package pkg) {
+        if (this.state != State.OPEN) {
+            return failedFuture(new IllegalStateException("Cannot add packages to a cart in state " + this.state));
+        }
+
+        if (this.isBatched()) {
+            this.selection.add(pkg.getId());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return this.submit("add:" + pkg.getId(), () -> {
+            HttpURLConnection connection = (HttpURLConnection) new URL(String.format(CART_ADD_ENDPOINT_URL, this.plugin.getConfiguration().getStoreName(), this.cartId)).openConnection();
+            connection.setRequestMethod("POST");
+
+            int responseCode = this.plugin.getMetricRegistry().endpoint("cart.add").execute(connection, ("packageId=" + pkg.getId()).getBytes(StandardCharsets.UTF_8));
+            if (responseCode >= 500) {
+                throw new IllegalStateException("The Minepay servers are currently unavailable");
+            } else if (responseCode != 200) {
+                throw new IllegalStateException("Expected status code 200 but received " + responseCode);
             }
+
+            return null;
         });
     }
 
     /**
-     * Populates the menu with a consistent set of buttons.
+     * Removes a package from the local selection of a batched cart.
+     *
+     * @param pkg a package.
+     * @return true if the package was previously selected, false otherwise.
      */
-    private void populateMenuButtons() {
-        if (this.category != null) {
-            ItemStack back = new ItemStack(Material.INK_SACK, 1, (short) 1);
-            {
-                ItemMeta meta = back.getItemMeta();
-                meta.setDisplayName(this.plugin.getLocalizationManager().get("command.buy.back"));
-                back.setItemMeta(meta);
+    public boolean removePackage(@Nonnull Package pkg) {
+        if (this.state != State.OPEN) {
+            throw new IllegalStateException("Cannot remove packages from a cart in state " + this.state);
+        }
+
+        return this.selection.remove(pkg.getId());
+    }
+
+    /**
+     * Requests the checkout information for this cart.
+     *
+     * Batched carts will submit their entire selection within this request. Checkouts are rejected
+     * while packages are still being added to the cart or another checkout is already in progress.
+     * The returned future is always completed on the server thread.
+     *
+     * @return a future.
+     */
+    @Nonnull
+    public CompletableFuture<CartResponse.Information> checkout() {
+        if (this.state != State.OPEN) {
+            return failedFuture(new IllegalStateException("Cannot confirm a cart in state " + this.state));
+        }
+
+        if (!this.operations.isEmpty()) {
+            return failedFuture(new IllegalStateException("Cannot confirm a cart while packages are being added"));
+        }
+
+        if (this.isBatched() && this.selection.isEmpty()) {
+            return failedFuture(new IllegalStateException("Cannot confirm an empty cart"));
+        }
+
+        this.state = State.CONFIRMING;
+
+        final String username = this.getPlayer().getName();
+        final String body = this.selection.stream()
+                .map((id) -> "packageId=" + id)
+                .collect(Collectors.joining("&"));
+
+        CompletableFuture<CartResponse.Information> future = this.submit("confirm", () -> {
+            final HttpURLConnection connection;
+            final int responseCode;
+
+            if (this.isBatched()) {
+                connection = (HttpURLConnection) new URL(String.format(CART_CHECKOUT_ENDPOINT_URL, this.plugin.getConfiguration().getStoreName(), URLEncoder.encode(username, "UTF-8"))).openConnection();
+                connection.setRequestMethod("POST");
+
+                responseCode = this.plugin.getMetricRegistry().endpoint("cart.checkout").execute(connection, body.getBytes(StandardCharsets.UTF_8));
+            } else {
+                connection = (HttpURLConnection) new URL(String.format(CART_INFORMATION_ENDPOINT_URL, this.plugin.getConfiguration().getStoreName(), this.cartId)).openConnection();
+                responseCode = this.plugin.getMetricRegistry().endpoint("cart.information").execute(connection, null);
+            }
+
+            if (responseCode >= 500) {
+                throw new IllegalStateException("The Minepay servers are currently unavailable");
+            } else if (responseCode != 200) {
+                throw new IllegalStateException("Expected status code 200 but received " + responseCode);
             }
 
-            this.add(this.getSize() - 9, back, (m, a) -> {
-                if (a == InventoryAction.PICKUP_ALL) {
-                    this.category = null;
-                    this.buildInterface();
+            try (InputStream inputStream = connection.getInputStream()) {
+                try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                    return CartResponse.Information.decode(reader);
                 }
-            });
+            }
+        });
+
+        return future.whenComplete((information, ex) -> this.state = (ex == null ? State.CONFIRMED : State.OPEN));
+    }
+
+    /**
+     * Confirms the submission of a cart.
+     *
+     * @param item the item which triggered the confirmation.
+     */
+    void confirm(@Nonnull MenuItem item) {
+        if (this.operations.containsKey("confirm")) {
+            return;
         }
 
-        if (this.selectedItem) {
-            ItemStack confirm = new ItemStack(Material.INK_SACK, 1, (short) 2);
-            {
-                ItemMeta meta = confirm.getItemMeta();
-                meta.setDisplayName(this.plugin.getLocalizationManager().get("command.buy.confirm"));
-                confirm.setItemMeta(meta);
+        if (this.state != State.OPEN || !this.operations.isEmpty()) {
+            this.getPlayer().sendMessage(this.plugin.getLocalizationManager().get("command.buy.pending"));
+            return;
+        }
+
+        this.await(item, this.checkout()).whenComplete((information, ex) -> {
+            if (ex != null) {
+                this.plugin.getLogger().log(Level.WARNING, "Could not confirm cart for player " + this.getPlayer().getName() + ": " + ex.getMessage(), ex);
+                this.getPlayer().sendMessage(this.plugin.getLocalizationManager().get("command.buy.failure"));
+                return;
             }
 
-            this.add(this.getSize() - 1, confirm, (m, a) -> {
-                if (a == InventoryAction.PICKUP_ALL) {
-                    this.confirm();
-                }
-            });
+            this.close();
+            this.plugin.getCartManager().destroy(this.getPlayer());
+
+            this.getPlayer().sendMessage(this.plugin.getLocalizationManager().get("command.buy.confirm.response", information.getUrl()));
+        });
+    }
+
+    /**
+     * Submits a remote operation unless an identical operation is already in flight.
+     *
+     * Operations are executed on an asynchronous scheduler thread while their futures are
+     * completed on the server thread in order to keep dependent actions thread safe.
+     *
+     * @param key       an operation key.
+     * @param operation an operation.
+     * @param <T>       a result type.
+     * @return a future.
+     */
+    @Nonnull
+    @SuppressWarnings({"deprecation", "unchecked"})
+    private <T> CompletableFuture<T> submit(@Nonnull String key, @Nonnull Callable<T> operation) {
+        CompletableFuture<T> pending = (CompletableFuture<T>) this.operations.get(key);
+
+        if (pending != null) {
+            return pending;
         }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        this.operations.put(key, future);
+
+        Bukkit.getScheduler().scheduleAsyncDelayedTask(this.plugin, () -> {
+            try {
+                T result = operation.call();
+
+                this.plugin.getTickScheduler().submit(TickScheduler.Priority.HIGH, () -> {
+                    this.operations.remove(key);
+                    future.complete(result);
+                });
+            } catch (Exception ex) {
+                this.plugin.getTickScheduler().submit(TickScheduler.Priority.HIGH, () -> {
+                    this.operations.remove(key);
+                    future.completeExceptionally(ex);
+                });
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Creates a future which has been completed exceptionally.
+     *
+     * @param ex  a cause.
+     * @param <T> a result type.
+     * @return a future.
+     */
+    @Nonnull
+    private static <T> CompletableFuture<T> failedFuture(@Nonnull Throwable ex) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    @Override
+    protected MenuLayout getPageLayout(int page) {
+        // the category overview is identical for all players and is thus shared while package
+        // listings and search results carry per-player selection markers
+        if (this.category != null || this.results != null) {
+            return null;
+        }
+
+        return this.plugin.getCartLayouts().getCategoryLayout(this.categories, this.getSize(), page);
+    }
+
+    /**
+     * Populates the menu with a consistent set of buttons.
+     */
+    @Override
+    protected void populateControls() {
+        if (this.category != null || this.results != null) {
+            this.apply(this.plugin.getCartLayouts().getBackLayout(this.getSize()));
+        }
+
+        if (!this.selection.isEmpty()) {
+            this.apply(this.plugin.getCartLayouts().getConfirmLayout(this.getSize()));
+        }
+    }
+
+    /**
+     * Returns to the previous view.
+     */
+    void back() {
+        // categories which have been opened from search results will return to the results first
+        if (this.category != null) {
+            this.category = null;
+        } else {
+            this.results = null;
+        }
+
+        this.setPage(0);
     }
 
     /**
@@ -149,43 +459,81 @@ public class Cart extends Menu {
      *
      * @param category a category.
      */
-    private void selectCategory(@Nonnull Category category) {
+    void selectCategory(@Nonnull Category category) {
         this.category = category;
-        this.buildInterface();
+        this.setPage(0);
+    }
+
+    /**
+     * Displays a set of search results in place of the category overview.
+     *
+     * @param results a set of search results.
+     */
+    public void showResults(@Nonnull CatalogIndex.Result results) {
+        this.category = null;
+        this.results = results;
+        this.setPage(0);
     }
 
     /**
      * Selects a package.
      *
-     * @param pkg a package.
+     * @param item the item which triggered the selection.
+     * @param pkg  a package.
      */
-    @SuppressWarnings("deprecation")
-    private void selectPackage(@Nonnull Package pkg) {
-        Bukkit.getScheduler().scheduleAsyncDelayedTask(this.plugin, () -> {
-            try {
-                HttpURLConnection connection = (HttpURLConnection) new URL(String.format(CART_ADD_ENDPOINT_URL, this.plugin.getConfiguration().getStoreName(), this.cartId)).openConnection();
-                connection.setDoOutput(true);
-                connection.setDoInput(false);
-
-                try (OutputStream outputStream = connection.getOutputStream()) {
-                    try (OutputStreamWriter writer = new OutputStreamWriter(outputStream)) {
-                        writer.write("packageId=" + pkg.getId());
-                    }
-                }
+    private void selectPackage(@Nonnull MenuItem item, @Nonnull Package pkg) {
+        // repeated clicks on the same package will simply await the pending request
+        if (this.operations.containsKey("add:" + pkg.getId())) {
+            return;
+        }
 
-                connection.connect();
+        if (this.state != State.OPEN) {
+            this.getPlayer().sendMessage(this.plugin.getLocalizationManager().get("command.buy.pending"));
+            return;
+        }
 
-                Bukkit.getScheduler().scheduleSyncDelayedTask(this.plugin, () -> {
-                    this.selectedItem = true;
-                    this.buildInterface();
-                });
-            } catch (IOException ex) {
-                // TODO: Proper error handling
+        // batched carts simply toggle the selection without any network interaction
+        if (this.isBatched()) {
+            if (!this.removePackage(pkg)) {
+                this.addPackage(pkg);
+            }
+
+            this.render();
+            return;
+        }
+
+        this.await(item, this.addPackage(pkg)).whenComplete((result, ex) -> {
+            if (ex != null) {
+                this.plugin.getLogger().log(Level.WARNING, "Could not add package #" + pkg.getId() + " to cart of player " + this.getPlayer().getName() + ": " + ex.getMessage(), ex);
                 this.getPlayer().sendMessage(this.plugin.getLocalizationManager().get("command.buy.failure"));
-                ex.printStackTrace();
+                return;
             }
+
+            this.selection.add(pkg.getId());
+            this.render();
         });
 
         // FIXME: Remove item from selection if single purchase only?
     }
+
+    /**
+     * Represents the states a cart may be in.
+     */
+    public enum State {
+
+        /**
+         * The cart accepts new packages and may be confirmed.
+         */
+        OPEN,
+
+        /**
+         * The cart is currently being confirmed.
+         */
+        CONFIRMING,
+
+        /**
+         * The cart has been confirmed and its checkout URL has been handed out.
+         */
+        CONFIRMED
+    }
 }
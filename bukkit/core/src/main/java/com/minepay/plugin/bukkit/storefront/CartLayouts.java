@@ -0,0 +1,237 @@
+package com.minepay.plugin.bukkit.storefront;
+
+import com.minepay.plugin.bukkit.MinePayPlugin;
+import com.minepay.plugin.bukkit.gui.MenuLayout;
+import com.minepay.plugin.bukkit.gui.PagedMenu;
+
+import org.bukkit.Material;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Caches the compiled layouts which are shared between all carts.
+ *
+ * Control rows are compiled once per menu size and locale while the pages of the category
+ * overview are additionally bound to the catalog they have been compiled from. Since carts keep
+ * the catalog they have been opened with, carts based on older catalogs may coexist with newer
+ * ones for a while and thus the layouts of the {@link #MAXIMUM_CATALOGS} most recently requested
+ * catalogs are retained. Since the handlers within these layouts receive the cart they have been
+ * invoked in, a single layout serves every player.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@NotThreadSafe
+public class CartLayouts {
+    public static final int MAXIMUM_CATALOGS = 4;
+    private final MinePayPlugin plugin;
+    private final Map<Integer, MenuLayout> backLayouts = new HashMap<>();
+    private final Map<Integer, MenuLayout> confirmLayouts = new HashMap<>();
+    private final LinkedList<CatalogLayouts> catalogLayouts = new LinkedList<>();
+    private Locale locale;
+
+    public CartLayouts(@Nonnull MinePayPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Retrieves the layout which contains the back button.
+     *
+     * @param size a menu size.
+     * @return a layout.
+     */
+    @Nonnull
+    public MenuLayout getBackLayout(@Nonnegative int size) {
+        this.validate();
+
+        return this.backLayouts.computeIfAbsent(size, (s) -> MenuLayout.builder(s)
+                .set(s - 9, this.createButton((short) 1, "command.buy.back"), (m, i, a) -> {
+                    if (a == InventoryAction.PICKUP_ALL) {
+                        ((Cart) m).back();
+                    }
+                })
+                .build());
+    }
+
+    /**
+     * Retrieves the layout which contains the confirm button.
+     *
+     * @param size a menu size.
+     * @return a layout.
+     */
+    @Nonnull
+    public MenuLayout getConfirmLayout(@Nonnegative int size) {
+        this.validate();
+
+        return this.confirmLayouts.computeIfAbsent(size, (s) -> MenuLayout.builder(s)
+                .set(s - 1, this.createButton((short) 2, "command.buy.confirm"), (m, i, a) -> {
+                    if (a == InventoryAction.PICKUP_ALL) {
+                        ((Cart) m).confirm(i);
+                    }
+                })
+                .build());
+    }
+
+    /**
+     * Retrieves the layout of a single page within the category overview.
+     *
+     * @param categories a list of categories.
+     * @param size       a menu size.
+     * @param page       a page index.
+     * @return a layout.
+     */
+    @Nonnull
+    public MenuLayout getCategoryLayout(@Nonnull List<Category> categories, @Nonnegative int size, @Nonnegative int page) {
+        this.validate();
+
+        return this.getCatalogLayouts(categories).computeIfAbsent(((long) size << 32) | page, (k) -> {
+            int pageSize = size - 9;
+            int pageCount = Math.max(1, (categories.size() + pageSize - 1) / pageSize);
+            int offset = page * pageSize;
+            int end = Math.min(categories.size(), offset + pageSize);
+
+            MenuLayout.Builder builder = MenuLayout.builder(size);
+
+            for (int i = offset; i < end; ++i) {
+                final Category category = categories.get(i);
+
+                builder.set(i - offset, this.plugin.getIconCache().getIcon(category), (m, item, a) -> ((Cart) m).selectCategory(category));
+            }
+
+            if (page > 0) {
+                builder.set(size - PagedMenu.PREVIOUS_PAGE_SLOT_OFFSET, this.createPageIcon(page - 1, pageCount, false), (m, item, a) -> {
+                    if (a == InventoryAction.PICKUP_ALL) {
+                        ((PagedMenu) m).setPage(page - 1);
+                    }
+                });
+            }
+
+            if (page + 1 < pageCount) {
+                builder.set(size - PagedMenu.NEXT_PAGE_SLOT_OFFSET, this.createPageIcon(page + 1, pageCount, true), (m, item, a) -> {
+                    if (a == InventoryAction.PICKUP_ALL) {
+                        ((PagedMenu) m).setPage(page + 1);
+                    }
+                });
+            }
+
+            return builder.build();
+        });
+    }
+
+    /**
+     * Retrieves the cached category layouts of a catalog and discards the layouts of the least
+     * recently requested catalog when the limit is exceeded.
+     *
+     * Catalogs are identified by their category list since every refresh publishes a new list.
+     *
+     * @param categories a list of categories.
+     * @return a map of layouts indexed by their menu size and page.
+     */
+    @Nonnull
+    private Map<Long, MenuLayout> getCatalogLayouts(@Nonnull List<Category> categories) {
+        Iterator<CatalogLayouts> it = this.catalogLayouts.iterator();
+
+        while (it.hasNext()) {
+            CatalogLayouts layouts = it.next();
+
+            if (layouts.categories == categories) {
+                if (layouts != this.catalogLayouts.getFirst()) {
+                    it.remove();
+                    this.catalogLayouts.addFirst(layouts);
+                }
+
+                return layouts.layouts;
+            }
+        }
+
+        if (this.catalogLayouts.size() >= MAXIMUM_CATALOGS) {
+            this.catalogLayouts.removeLast();
+        }
+
+        CatalogLayouts layouts = new CatalogLayouts(categories);
+        this.catalogLayouts.addFirst(layouts);
+        return layouts.layouts;
+    }
+
+    /**
+     * Creates the icon which is used for navigating to a certain page.
+     *
+     * @param page      a target page index.
+     * @param pageCount a total amount of pages.
+     * @param next      true if the icon navigates forward, false otherwise.
+     * @return an item stack.
+     */
+    @Nonnull
+    public ItemStack createPageIcon(@Nonnegative int page, @Nonnegative int pageCount, boolean next) {
+        ItemStack icon = new ItemStack(Material.ARROW, Math.min(64, page + 1));
+        {
+            ItemMeta meta = icon.getItemMeta();
+            meta.setDisplayName(this.plugin.getLocalizationManager().get("command.buy.page." + (next ? "next" : "previous"), page + 1, pageCount));
+            icon.setItemMeta(meta);
+        }
+        return icon;
+    }
+
+    /**
+     * Creates a control button.
+     *
+     * @param color a dye color.
+     * @param key   a localization key.
+     * @return an item stack.
+     */
+    @Nonnull
+    private ItemStack createButton(short color, @Nonnull String key) {
+        ItemStack icon = new ItemStack(Material.INK_SACK, 1, color);
+        {
+            ItemMeta meta = icon.getItemMeta();
+            meta.setDisplayName(this.plugin.getLocalizationManager().get(key));
+            icon.setItemMeta(meta);
+        }
+        return icon;
+    }
+
+    /**
+     * Discards all cached layouts.
+     */
+    public void invalidate() {
+        this.backLayouts.clear();
+        this.confirmLayouts.clear();
+        this.catalogLayouts.clear();
+    }
+
+    /**
+     * Discards all cached layouts when the active locale has changed since they were compiled.
+     */
+    private void validate() {
+        Locale locale = this.plugin.getLocalizationManager().getLocale();
+
+        if (!Objects.equals(this.locale, locale)) {
+            this.invalidate();
+            this.locale = locale;
+        }
+    }
+
+    /**
+     * Represents the category layouts which have been compiled from a single catalog.
+     */
+    private static final class CatalogLayouts {
+        private final List<Category> categories;
+        private final Map<Long, MenuLayout> layouts = new HashMap<>();
+
+        private CatalogLayouts(@Nonnull List<Category> categories) {
+            this.categories = categories;
+        }
+    }
+}
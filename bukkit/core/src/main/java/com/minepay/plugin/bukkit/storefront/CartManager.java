@@ -1,13 +1,15 @@
 package com.minepay.plugin.bukkit.storefront;
 
+import com.google.gson.stream.JsonReader;
+
 import com.minepay.plugin.bukkit.MinePayPlugin;
+import com.minepay.plugin.bukkit.task.TickScheduler;
 
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerQuitEvent;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -15,25 +17,37 @@ import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 /**
  * Manages all active instances of carts and provisions new instances as needed.
  *
+ * Carts are registered by the unique identifier of their owner and are discarded when they have
+ * been idle for too long or when the configured amount of live carts is exceeded.
+ *
  * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
  */
 public class CartManager implements Listener {
     public static final String CART_CREATE_ENDPOINT_URL = "https://api.minepay.net/v1/store/examplestore/cart/%s";
 
     private final MinePayPlugin plugin;
-    private final Map<Player, Cart> cartMap = new HashMap<>();
+    private final Map<UUID, Cart> cartMap = new ConcurrentHashMap<>();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
 
     public CartManager(@Nonnull MinePayPlugin plugin) {
         this.plugin = plugin;
@@ -44,8 +58,9 @@ public class CartManager implements Listener {
      *
      * @param event an event.
      */
+    @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerQuit(@Nonnull PlayerQuitEvent event) {
-        this.cartMap.remove(event.getPlayer());
+        this.destroy(event.getPlayer());
     }
 
     /**
@@ -56,7 +71,114 @@ public class CartManager implements Listener {
      */
     @Nullable
     public Cart getCart(@Nonnull Player player) {
-        return this.cartMap.get(player);
+        Cart cart = this.cartMap.get(player.getUniqueId());
+
+        if (cart != null) {
+            cart.touch();
+        }
+
+        return cart;
+    }
+
+    /**
+     * Retrieves the amount of carts which are currently active.
+     *
+     * @return an amount of carts.
+     */
+    @Nonnegative
+    public int getActiveCount() {
+        return this.cartMap.size();
+    }
+
+    /**
+     * Retrieves the total amount of carts created since the plugin has been enabled.
+     *
+     * @return an amount of carts.
+     */
+    @Nonnegative
+    public long getCreatedCount() {
+        return this.createdCount.sum();
+    }
+
+    /**
+     * Retrieves the total amount of carts which have been confirmed or abandoned by disconnecting.
+     *
+     * @return an amount of carts.
+     */
+    @Nonnegative
+    public long getDestroyedCount() {
+        return this.destroyedCount.sum();
+    }
+
+    /**
+     * Retrieves the total amount of carts which have been discarded due to inactivity.
+     *
+     * @return an amount of carts.
+     */
+    @Nonnegative
+    public long getExpiredCount() {
+        return this.expiredCount.sum();
+    }
+
+    /**
+     * Retrieves the total amount of carts which have been discarded in order to respect the
+     * configured cart limit.
+     *
+     * @return an amount of carts.
+     */
+    @Nonnegative
+    public long getEvictedCount() {
+        return this.evictedCount.sum();
+    }
+
+    /**
+     * Registers a newly created cart and evicts the carts which have been idle the longest when
+     * the configured limit is exceeded.
+     *
+     * @param player a player.
+     * @param cart   a cart.
+     */
+    private void register(@Nonnull Player player, @Nonnull Cart cart) {
+        Cart previous = this.cartMap.put(player.getUniqueId(), cart);
+        this.createdCount.increment();
+
+        if (previous != null && previous != cart) {
+            previous.close();
+        }
+
+        while (this.cartMap.size() > this.plugin.getConfiguration().getCartCapacity()) {
+            Map.Entry<UUID, Cart> idlest = null;
+
+            for (Map.Entry<UUID, Cart> entry : this.cartMap.entrySet()) {
+                if (entry.getValue() != cart && (idlest == null || entry.getValue().getLastAccess() - idlest.getValue().getLastAccess() < 0)) {
+                    idlest = entry;
+                }
+            }
+
+            if (idlest == null || !this.cartMap.remove(idlest.getKey(), idlest.getValue())) {
+                break;
+            }
+
+            idlest.getValue().close();
+            this.evictedCount.increment();
+        }
+    }
+
+    /**
+     * Discards all carts which have not been interacted with within the configured idle timeout.
+     *
+     * <strong>Note:</strong> This method must be invoked from the server thread.
+     */
+    public void expire() {
+        final long timeout = TimeUnit.SECONDS.toNanos(this.plugin.getConfiguration().getCartIdleTimeout());
+        final long now = System.nanoTime();
+
+        for (Map.Entry<UUID, Cart> entry : this.cartMap.entrySet()) {
+            if (now - entry.getValue().getLastAccess() >= timeout && this.cartMap.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().close();
+                this.expiredCount.increment();
+            }
+        }
     }
 
     /**
@@ -75,34 +197,46 @@ public class CartManager implements Listener {
             return;
         }
 
-        this.plugin.getServer().getScheduler().scheduleAsyncDelayedTask(this.plugin, () -> {
-            final JSONParser parser = new JSONParser();
+        // batched carts do not require a remote counterpart until they are checked out
+        if (this.plugin.getConfiguration().isBatchedCheckout()) {
+            final Cart cart = new Cart(this.plugin, player, null, categories);
 
-            try {
-                HttpURLConnection connection = (HttpURLConnection) new URL(String.format(CART_CREATE_ENDPOINT_URL, URLEncoder.encode(player.getName(), "UTF-8"))).openConnection();
+            this.register(player, cart);
+            successCallback.accept(cart);
+            return;
+        }
 
-                int responseCode = connection.getResponseCode();
-                if (responseCode >= 500) {
-                    throw new IllegalStateException("The Minepay servers are currently unavailable");
-                } else if (responseCode != 200) {
-                    throw new IllegalStateException("Expected status code 200 but received " + responseCode);
-                }
+        // pre-provisioned carts allow us to skip the remote round trip entirely
+        final UUID pooledId = this.plugin.getCartPool().take(player);
+
+        if (pooledId != null) {
+            final Cart cart = new Cart(this.plugin, player, pooledId, categories);
 
-                try (InputStream inputStream = connection.getInputStream()) {
-                    try (InputStreamReader reader = new InputStreamReader(inputStream)) {
-                        JSONObject object = (JSONObject) parser.parse(reader);
+            this.register(player, cart);
+            successCallback.accept(cart);
+            return;
+        }
 
-                        final CartResponse.Create response = new CartResponse.Create(object);
-                        this.plugin.getServer().getScheduler().scheduleSyncDelayedTask(this.plugin, () -> {
-                            final Cart cart = new Cart(this.plugin, player, response.getId(), categories);
+        final String username = player.getName();
 
-                            this.cartMap.put(player, cart);
-                            successCallback.accept(cart);
-                        });
+        this.plugin.getServer().getScheduler().scheduleAsyncDelayedTask(this.plugin, () -> {
+            try {
+                final UUID cartId = this.requestCartId(username);
+
+                this.plugin.getTickScheduler().submit(TickScheduler.Priority.HIGH, () -> {
+                    // players who left while the cart was being created are not tracked any
+                    // longer and the remote cart is left to expire on its own
+                    if (!player.isOnline()) {
+                        return;
                     }
-                }
-            } catch (IllegalStateException | IOException | ParseException ex) {
-                this.plugin.getServer().getScheduler().scheduleSyncDelayedTask(this.plugin, () -> {
+
+                    final Cart cart = new Cart(this.plugin, player, cartId, categories);
+
+                    this.register(player, cart);
+                    successCallback.accept(cart);
+                });
+            } catch (IllegalStateException | IOException ex) {
+                this.plugin.getTickScheduler().submit(TickScheduler.Priority.HIGH, () -> {
                     this.plugin.getLogger().log(Level.SEVERE, "Could not create cart for player " + player.getDisplayName() + ": " + ex.getMessage(), ex);
                     failureCallback.run();
                 });
@@ -110,12 +244,44 @@ public class CartManager implements Listener {
         });
     }
 
+    /**
+     * Creates a new remote cart for the specified user.
+     *
+     * <strong>Note:</strong> This method performs blocking I/O and must not be called from the
+     * server thread.
+     *
+     * @param username a username.
+     * @return a cart identifier.
+     *
+     * @throws IllegalStateException when an invalid response is received.
+     * @throws IOException           when an error occurs while contacting the API or decoding its response.
+     */
+    @Nonnull
+    UUID requestCartId(@Nonnull String username) throws IllegalStateException, IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(String.format(CART_CREATE_ENDPOINT_URL, URLEncoder.encode(username, "UTF-8"))).openConnection();
+
+        int responseCode = this.plugin.getMetricRegistry().endpoint("cart.create").execute(connection, null);
+        if (responseCode >= 500) {
+            throw new IllegalStateException("The Minepay servers are currently unavailable");
+        } else if (responseCode != 200) {
+            throw new IllegalStateException("Expected status code 200 but received " + responseCode);
+        }
+
+        try (InputStream inputStream = connection.getInputStream()) {
+            try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                return CartResponse.Create.decode(reader).getId();
+            }
+        }
+    }
+
     /**
      * Destroys a cart.
      *
      * @param player a player.
      */
     public void destroy(@Nonnull Player player) {
-        this.cartMap.remove(player);
+        if (this.cartMap.remove(player.getUniqueId()) != null) {
+            this.destroyedCount.increment();
+        }
     }
 }
@@ -0,0 +1,172 @@
+package com.minepay.plugin.bukkit.storefront;
+
+import com.minepay.plugin.bukkit.MinePayPlugin;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Speculatively provisions remote carts for players in order to open the buy menu without waiting
+ * for the API.
+ *
+ * Provisioned carts are kept for a limited amount of time and are simply forgotten once they
+ * expire since abandoned carts do not need to be released remotely. Carts which are still being
+ * provisioned count towards the pool capacity.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public class CartPool implements Listener {
+    private final MinePayPlugin plugin;
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    public CartPool(@Nonnull MinePayPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Checks whether carts are to be provisioned ahead of time.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isEnabled() {
+        return this.plugin.getConfiguration().isCartPoolEnabled() && !this.plugin.getConfiguration().isBatchedCheckout() && !this.plugin.getConfiguration().getServerId().isEmpty();
+    }
+
+    /**
+     * Retrieves the amount of carts which are currently provisioned.
+     *
+     * @return an amount of carts.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Handles player logins in order to provision a cart ahead of time.
+     *
+     * @param event an event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(@Nonnull PlayerJoinEvent event) {
+        this.provision(event.getPlayer());
+    }
+
+    /**
+     * Handles player disconnections in order to forget their provisioned carts.
+     *
+     * @param event an event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(@Nonnull PlayerQuitEvent event) {
+        UUID playerId = event.getPlayer().getUniqueId();
+
+        // pending provisions are cancelled by removing them from the pending set which prevents
+        // their result from being stored once the request completes
+        synchronized (this) {
+            this.pending.remove(playerId);
+            this.entries.remove(playerId);
+        }
+    }
+
+    /**
+     * Provisions a cart for the specified player unless a valid cart has already been provisioned.
+     *
+     * This method may be invoked by integrations whenever a player is likely to open the buy menu
+     * soon (for instance when they enter a shop region).
+     *
+     * @param player a player.
+     */
+    @SuppressWarnings("deprecation")
+    public void provision(@Nonnull Player player) {
+        if (!this.isEnabled()) {
+            return;
+        }
+
+        final UUID playerId = player.getUniqueId();
+        final String username = player.getName();
+        this.purge();
+
+        synchronized (this) {
+            Entry entry = this.entries.get(playerId);
+            if ((entry != null && !entry.isExpired()) || this.entries.size() + this.pending.size() >= this.plugin.getConfiguration().getCartPoolCapacity() || !this.pending.add(playerId)) {
+                return;
+            }
+        }
+
+        this.plugin.getServer().getScheduler().scheduleAsyncDelayedTask(this.plugin, () -> {
+            UUID cartId = null;
+
+            try {
+                cartId = this.plugin.getCartManager().requestCartId(username);
+            } catch (IllegalStateException | IOException ex) {
+                this.plugin.getLogger().log(Level.FINE, "Could not provision cart for player " + username + ": " + ex.getMessage(), ex);
+            }
+
+            synchronized (this) {
+                // players who left in the meantime have already been removed from the pending set
+                if (this.pending.remove(playerId) && cartId != null) {
+                    this.entries.put(playerId, new Entry(cartId, System.nanoTime() + TimeUnit.SECONDS.toNanos(this.plugin.getConfiguration().getCartPoolTtl())));
+                }
+            }
+        });
+    }
+
+    /**
+     * Retrieves and removes the cart which has been provisioned for a player.
+     *
+     * @param player a player.
+     * @return a cart identifier or, if no valid cart has been provisioned, null.
+     */
+    @Nullable
+    public UUID take(@Nonnull Player player) {
+        Entry entry = this.entries.remove(player.getUniqueId());
+
+        if (entry == null || entry.isExpired()) {
+            return null;
+        }
+
+        return entry.cartId;
+    }
+
+    /**
+     * Removes all expired carts from the pool.
+     */
+    public void purge() {
+        this.entries.values().removeIf(Entry::isExpired);
+    }
+
+    /**
+     * Represents a provisioned cart.
+     */
+    private static final class Entry {
+        private final UUID cartId;
+        private final long expiration;
+
+        Entry(@Nonnull UUID cartId, long expiration) {
+            this.cartId = cartId;
+            this.expiration = expiration;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - this.expiration >= 0;
+        }
+    }
+}
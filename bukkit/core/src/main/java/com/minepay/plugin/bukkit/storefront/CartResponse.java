@@ -1,7 +1,8 @@
 package com.minepay.plugin.bukkit.storefront;
 
-import org.json.simple.JSONObject;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
 import java.util.UUID;
 
 import javax.annotation.Nonnull;
@@ -18,10 +19,6 @@ public abstract class CartResponse {
         this.id = id;
     }
 
-    public CartResponse(@Nonnull JSONObject object) {
-        this.id = UUID.fromString((String) object.get("cartID"));
-    }
-
     @Nonnull
     public UUID getId() {
         return this.id;
@@ -35,9 +32,39 @@ public abstract class CartResponse {
             this.username = username;
         }
 
-        public Create(@Nonnull JSONObject object) {
-            super(object);
-            this.username = (String) object.get("username");
+        /**
+         * Decodes a cart creation response.
+         *
+         * @param reader a reader positioned at the beginning of a response object.
+         * @return a response.
+         *
+         * @throws IOException when reading or decoding fails.
+         */
+        @Nonnull
+        public static Create decode(@Nonnull JsonReader reader) throws IOException {
+            UUID id = null;
+            String username = "";
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "cartID":
+                        id = decodeId(reader);
+                        break;
+                    case "username":
+                        username = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (id == null) {
+                throw new IOException("Incomplete cart response: Expected cartID");
+            }
+
+            return new Create(id, username);
         }
 
         @Nonnull
@@ -54,12 +81,41 @@ public abstract class CartResponse {
             this.packageId = packageId;
         }
 
-        public Add(@Nonnull JSONObject object) {
-            super(object);
-            this.packageId = (long) object.get("packageAdded");
+        /**
+         * Decodes a package addition response.
+         *
+         * @param reader a reader positioned at the beginning of a response object.
+         * @return a response.
+         *
+         * @throws IOException when reading or decoding fails.
+         */
+        @Nonnull
+        public static Add decode(@Nonnull JsonReader reader) throws IOException {
+            UUID id = null;
+            long packageId = -1;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "cartID":
+                        id = decodeId(reader);
+                        break;
+                    case "packageAdded":
+                        packageId = reader.nextLong();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (id == null || packageId == -1) {
+                throw new IOException("Incomplete cart response: Expected cartID and packageAdded");
+            }
+
+            return new Add(id, packageId);
         }
 
-        @Nonnull
         public long getPackageId() {
             return this.packageId;
         }
@@ -74,9 +130,39 @@ public abstract class CartResponse {
             this.url = url;
         }
 
-        public Information(@Nonnull JSONObject object) {
-            this.username = (String) object.get("username");
-            this.url = (String) object.get("cartURL");
+        /**
+         * Decodes a cart information response.
+         *
+         * @param reader a reader positioned at the beginning of a response object.
+         * @return a response.
+         *
+         * @throws IOException when reading or decoding fails.
+         */
+        @Nonnull
+        public static Information decode(@Nonnull JsonReader reader) throws IOException {
+            String username = "";
+            String url = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "username":
+                        username = reader.nextString();
+                        break;
+                    case "cartURL":
+                        url = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (url == null) {
+                throw new IOException("Incomplete cart response: Expected cartURL");
+            }
+
+            return new Information(username, url);
         }
 
         @Nonnull
@@ -89,4 +175,21 @@ public abstract class CartResponse {
             return this.url;
         }
     }
+
+    /**
+     * Decodes a cart identifier.
+     *
+     * @param reader a reader positioned at a cart identifier.
+     * @return a cart identifier.
+     *
+     * @throws IOException when reading or decoding fails.
+     */
+    @Nonnull
+    private static UUID decodeId(@Nonnull JsonReader reader) throws IOException {
+        try {
+            return UUID.fromString(reader.nextString());
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Malformed cart identifier: " + ex.getMessage(), ex);
+        }
+    }
 }
@@ -0,0 +1,254 @@
+package com.minepay.plugin.bukkit.storefront;
+
+import com.google.common.collect.ImmutableList;
+
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Provides an in-memory search index over the names and descriptions of all categories and
+ * packages within a catalog.
+ *
+ * Tokens are stored in an inverted index as well as a prefix trie which allows partial search
+ * terms to be resolved without iterating the token set. Indices are immutable once built and may
+ * thus be queried from any thread.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public final class CatalogIndex {
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final long version;
+    private final List<Category> categories;
+    private final List<Package> packages;
+    private final Map<String, BitSet> tokens;
+    private final Node root;
+
+    private CatalogIndex(@Nonnegative long version, @Nonnull List<Category> categories, @Nonnull List<Package> packages, @Nonnull Map<String, BitSet> tokens, @Nonnull Node root) {
+        this.version = version;
+        this.categories = categories;
+        this.packages = packages;
+        this.tokens = tokens;
+        this.root = root;
+    }
+
+    /**
+     * Builds a new index for the specified catalog.
+     *
+     * @param version    a catalog version.
+     * @param categories a list of categories.
+     * @return an index.
+     */
+    @Nonnull
+    public static CatalogIndex build(@Nonnegative long version, @Nonnull List<Category> categories) {
+        List<Package> packages = new ArrayList<>();
+        Map<String, BitSet> tokens = new HashMap<>();
+        Node root = new Node();
+
+        int entry = 0;
+        for (Category category : categories) {
+            index(tokens, root, entry++, category.getName(), category.getDescription());
+        }
+
+        for (Category category : categories) {
+            for (Package pkg : category.getPackages()) {
+                packages.add(pkg);
+                index(tokens, root, entry++, pkg.getName(), pkg.getDescription());
+            }
+        }
+
+        return new CatalogIndex(version, ImmutableList.copyOf(categories), ImmutableList.copyOf(packages), tokens, root);
+    }
+
+    /**
+     * Adds all tokens within the specified texts to the index.
+     *
+     * @param tokens a token map.
+     * @param root   a trie root.
+     * @param entry  an entry index.
+     * @param texts  a set of texts.
+     */
+    private static void index(@Nonnull Map<String, BitSet> tokens, @Nonnull Node root, @Nonnegative int entry, @Nonnull String... texts) {
+        for (String text : texts) {
+            for (String token : tokenize(text)) {
+                tokens.computeIfAbsent(token, (t) -> new BitSet()).set(entry);
+
+                Node node = root;
+                for (int i = 0; i < token.length(); ++i) {
+                    node = node.children.computeIfAbsent(token.charAt(i), (c) -> new Node());
+                    node.postings.set(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits a text into its normalized tokens.
+     *
+     * @param text a text.
+     * @return a set of tokens.
+     */
+    @Nonnull
+    private static List<String> tokenize(@Nonnull String text) {
+        List<String> tokens = new ArrayList<>();
+
+        for (String token : TOKEN_SEPARATOR.split(ChatColor.stripColor(text).toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Retrieves the version of the catalog this index has been built from.
+     *
+     * @return a version.
+     */
+    @Nonnegative
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Searches the index for entries which match all terms within a query.
+     *
+     * Each term is matched as a prefix of a token while entries which contain a term as a complete
+     * token are ranked first.
+     *
+     * @param query a query.
+     * @return a search result.
+     */
+    @Nonnull
+    public Result search(@Nonnull String query) {
+        List<String> terms = tokenize(query);
+
+        if (terms.isEmpty()) {
+            return new Result(ImmutableList.of(), ImmutableList.of());
+        }
+
+        BitSet matches = null;
+        for (String term : terms) {
+            Node node = this.root;
+
+            for (int i = 0; i < term.length() && node != null; ++i) {
+                node = node.children.get(term.charAt(i));
+            }
+
+            if (node == null) {
+                return new Result(ImmutableList.of(), ImmutableList.of());
+            }
+
+            if (matches == null) {
+                matches = (BitSet) node.postings.clone();
+            } else {
+                matches.and(node.postings);
+            }
+        }
+
+        List<Match> ranking = new ArrayList<>(matches.cardinality());
+        for (int entry = matches.nextSetBit(0); entry != -1; entry = matches.nextSetBit(entry + 1)) {
+            int score = 0;
+
+            for (String term : terms) {
+                BitSet postings = this.tokens.get(term);
+
+                if (postings != null && postings.get(entry)) {
+                    ++score;
+                }
+            }
+
+            ranking.add(new Match(entry, score));
+        }
+        ranking.sort((a, b) -> Integer.compare(b.score, a.score));
+
+        ImmutableList.Builder<Category> categories = ImmutableList.builder();
+        ImmutableList.Builder<Package> packages = ImmutableList.builder();
+
+        for (Match match : ranking) {
+            if (match.entry < this.categories.size()) {
+                categories.add(this.categories.get(match.entry));
+            } else {
+                packages.add(this.packages.get(match.entry - this.categories.size()));
+            }
+        }
+
+        return new Result(categories.build(), packages.build());
+    }
+
+    /**
+     * Represents a node within the prefix trie.
+     */
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final BitSet postings = new BitSet();
+    }
+
+    /**
+     * Represents a matched entry along with its rank.
+     */
+    private static final class Match {
+        private final int entry;
+        private final int score;
+
+        Match(@Nonnegative int entry, @Nonnegative int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Represents the categories and packages matched by a search query.
+     */
+    public static final class Result {
+        private final List<Category> categories;
+        private final List<Package> packages;
+
+        private Result(@Nonnull List<Category> categories, @Nonnull List<Package> packages) {
+            this.categories = categories;
+            this.packages = packages;
+        }
+
+        @Nonnull
+        public List<Category> getCategories() {
+            return this.categories;
+        }
+
+        @Nonnull
+        public List<Package> getPackages() {
+            return this.packages;
+        }
+
+        /**
+         * Checks whether the query did not match any entries.
+         *
+         * @return true if empty, false otherwise.
+         */
+        public boolean isEmpty() {
+            return this.categories.isEmpty() && this.packages.isEmpty();
+        }
+
+        /**
+         * Retrieves the total amount of matched entries.
+         *
+         * @return an amount of entries.
+         */
+        @Nonnegative
+        public int size() {
+            return this.categories.size() + this.packages.size();
+        }
+    }
+}
@@ -1,15 +1,16 @@
 package com.minepay.plugin.bukkit.storefront;
 
 import com.google.common.collect.ImmutableList;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import com.minepay.plugin.bukkit.LocalizationManager;
 
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -35,20 +36,60 @@ public class Category {
         this.packages = packages;
     }
 
-    public Category(@Nonnull JSONObject object) {
-        this.id = (long) object.get("id");
-        this.name = (String) object.get("name");
-        this.description = (String) object.get("description");
-        this.guiItem = Material.valueOf(((String) object.get("guiItem")).toUpperCase());
-
+    /**
+     * Decodes a category and its packages from its JSON representation.
+     *
+     * @param reader a reader positioned at the beginning of a category object.
+     * @return a category.
+     *
+     * @throws IOException when reading or decoding fails.
+     */
+    @Nonnull
+    public static Category decode(@Nonnull JsonReader reader) throws IOException {
+        long id = -1;
+        String name = null;
+        String description = "";
+        Material guiItem = MaterialResolver.FALLBACK_MATERIAL;
         ImmutableList.Builder<Package> packages = ImmutableList.builder();
-        {
-            JSONArray array = (JSONArray) object.get("packages");
-            for (Object obj : array) {
-                packages.add(new Package((JSONObject) obj));
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = reader.nextLong();
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "description":
+                    // descriptions are optional and may be passed as null
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else {
+                        description = reader.nextString();
+                    }
+                    break;
+                case "guiItem":
+                    guiItem = MaterialResolver.resolve(reader.nextString());
+                    break;
+                case "packages":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        packages.add(Package.decode(reader));
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
             }
         }
-        this.packages = packages.build();
+        reader.endObject();
+
+        if (id == -1 || name == null) {
+            throw new IOException("Incomplete category definition: Expected id and name");
+        }
+
+        return new Category(id, name, description, guiItem, packages.build());
     }
 
     public long getId() {
@@ -0,0 +1,83 @@
+package com.minepay.plugin.bukkit.storefront;
+
+import com.minepay.plugin.bukkit.MinePayPlugin;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Caches the rendered menu icons of store categories and packages.
+ *
+ * Icons are stored as prototypes which are keyed by their entity identifier and are valid for a
+ * single catalog version and locale. Callers will always receive a copy of the prototype in order
+ * to keep the cached instance unmodified.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@NotThreadSafe
+public class IconCache {
+    private final MinePayPlugin plugin;
+    private final Map<Long, ItemStack> categoryIcons = new HashMap<>();
+    private final Map<Long, ItemStack> packageIcons = new HashMap<>();
+    private long catalogVersion = -1;
+    private Locale locale;
+
+    public IconCache(@Nonnull MinePayPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Retrieves a copy of the icon for a certain category.
+     *
+     * @param category a category.
+     * @return an item stack.
+     */
+    @Nonnull
+    public ItemStack getIcon(@Nonnull Category category) {
+        this.validate();
+        return this.categoryIcons.computeIfAbsent(category.getId(), (id) -> category.getIcon(this.plugin.getLocalizationManager())).clone();
+    }
+
+    /**
+     * Retrieves a copy of the icon for a certain package.
+     *
+     * @param pkg a package.
+     * @return an item stack.
+     */
+    @Nonnull
+    public ItemStack getIcon(@Nonnull Package pkg) {
+        this.validate();
+        return this.packageIcons.computeIfAbsent(pkg.getId(), (id) -> pkg.getIcon(this.plugin.getLocalizationManager())).clone();
+    }
+
+    /**
+     * Discards all cached icons.
+     */
+    public void invalidate() {
+        this.categoryIcons.clear();
+        this.packageIcons.clear();
+    }
+
+    /**
+     * Discards all cached icons when either the catalog or the active locale have changed since
+     * the prototypes were rendered.
+     */
+    private void validate() {
+        long catalogVersion = this.plugin.getCatalogVersion();
+        Locale locale = this.plugin.getLocalizationManager().getLocale();
+
+        if (this.catalogVersion != catalogVersion || !Objects.equals(this.locale, locale)) {
+            this.invalidate();
+
+            this.catalogVersion = catalogVersion;
+            this.locale = locale;
+        }
+    }
+}
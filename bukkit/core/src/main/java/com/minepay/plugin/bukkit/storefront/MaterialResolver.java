@@ -0,0 +1,46 @@
+package com.minepay.plugin.bukkit.storefront;
+
+import org.bukkit.Material;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Resolves the material names passed by the API into their respective Bukkit materials.
+ *
+ * Since stores are configured independently of the server version, names which are unknown to
+ * the server are mapped to a fallback material instead of being rejected. Resolved names are
+ * cached as catalogs tend to re-use a small set of materials.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public final class MaterialResolver {
+    public static final Material FALLBACK_MATERIAL = Material.CHEST;
+    private static final Map<String, Material> cache = new ConcurrentHashMap<>();
+
+    private MaterialResolver() {
+    }
+
+    /**
+     * Resolves a material name.
+     *
+     * @param name a name.
+     * @return a material or, if the name is unknown to this server, the fallback material.
+     */
+    @Nonnull
+    public static Material resolve(@Nullable String name) {
+        if (name == null || name.isEmpty()) {
+            return FALLBACK_MATERIAL;
+        }
+
+        return cache.computeIfAbsent(name, (n) -> {
+            Material material = Material.matchMaterial(n);
+            return (material != null ? material : FALLBACK_MATERIAL);
+        });
+    }
+}
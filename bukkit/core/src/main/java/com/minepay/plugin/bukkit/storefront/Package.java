@@ -1,12 +1,15 @@
 package com.minepay.plugin.bukkit.storefront;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
 import com.minepay.plugin.bukkit.LocalizationManager;
 
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.json.simple.JSONObject;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Arrays;
 
@@ -30,12 +33,65 @@ public class Package {
         this.price = price;
     }
 
-    public Package(@Nonnull JSONObject object) {
-        this.id = (long) object.get("id");
-        this.name = (String) object.get("name");
-        this.description = (String) object.get("description");
-        this.guiItem = Material.valueOf(((String) object.get("guiItem")).toUpperCase());
-        this.price = BigDecimal.valueOf((float) object.get("price")); // TODO: Prices should not be passed as floats!
+    /**
+     * Decodes a package from its JSON representation.
+     *
+     * @param reader a reader positioned at the beginning of a package object.
+     * @return a package.
+     *
+     * @throws IOException           when reading or decoding fails.
+     * @throws IllegalStateException when the package contains malformed values.
+     */
+    @Nonnull
+    public static Package decode(@Nonnull JsonReader reader) throws IOException {
+        long id = -1;
+        String name = null;
+        String description = "";
+        Material guiItem = MaterialResolver.FALLBACK_MATERIAL;
+        BigDecimal price = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = reader.nextLong();
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "description":
+                    // descriptions are optional and may be passed as null
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else {
+                        description = reader.nextString();
+                    }
+                    break;
+                case "guiItem":
+                    guiItem = MaterialResolver.resolve(reader.nextString());
+                    break;
+                case "price":
+                    // numbers are passed on as their literal representation and thus retain their
+                    // exact decimal value
+                    String literal = reader.nextString();
+
+                    try {
+                        price = new BigDecimal(literal);
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalStateException("Malformed package price: " + literal, ex);
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id == -1 || name == null || price == null) {
+            throw new IOException("Incomplete package definition: Expected id, name and price");
+        }
+
+        return new Package(id, name, description, guiItem, price);
     }
 
     public long getId() {
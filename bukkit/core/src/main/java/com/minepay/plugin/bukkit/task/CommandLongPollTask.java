@@ -1,23 +1,27 @@
 package com.minepay.plugin.bukkit.task;
 
+import com.google.gson.stream.JsonReader;
+
 import com.minepay.plugin.bukkit.MinePayPlugin;
 import com.minepay.plugin.bukkit.command.CommandTemplate;
 
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import javax.annotation.Nonnull;
@@ -26,8 +30,10 @@ import javax.net.ssl.SSLEngine;
 import javax.net.ssl.TrustManagerFactory;
 
 import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.Channel;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
@@ -55,14 +61,21 @@ import io.netty.handler.ssl.SslHandler;
  */
 @ChannelHandler.Sharable
 public class CommandLongPollTask extends SimpleChannelInboundHandler<FullHttpResponse> implements Runnable {
+    private static final String MESSAGE_TYPE_COMMANDS = "commands";
+    private static final String MESSAGE_TYPE_CATALOG = "catalog";
+    private static final long RETRY_DELAY = 15;
     private final MinePayPlugin plugin;
     private final EventLoopGroup workerGroup;
     private final Bootstrap bootstrap;
+    private final AtomicInteger pendingCommands = new AtomicInteger();
+    private volatile long requestTime;
 
     public CommandLongPollTask(@Nonnull MinePayPlugin plugin) {
         this.plugin = plugin;
         this.workerGroup = new NioEventLoopGroup();
 
+        plugin.getMetricRegistry().gauge("commands.pending", this.pendingCommands::get);
+
         this.bootstrap = new Bootstrap()
                 .group(this.workerGroup)
                 .channel(NioSocketChannel.class)
@@ -94,6 +107,8 @@ public class CommandLongPollTask extends SimpleChannelInboundHandler<FullHttpRes
      */
     @Override
     protected void channelRead0(@Nonnull ChannelHandlerContext ctx, @Nonnull FullHttpResponse response) throws Exception {
+        this.plugin.getMetricRegistry().histogram("longpoll.round-trip").recordSince(this.requestTime);
+
         switch (response.getStatus().code()) {
             case 200:
                 break;
@@ -107,63 +122,171 @@ public class CommandLongPollTask extends SimpleChannelInboundHandler<FullHttpRes
         }
 
         ctx.close();
-        this.handleCommands(response.content().toString(StandardCharsets.UTF_8));
+        this.handleMessages(response.content());
         this.initiatePollRequest();
     }
 
     /**
-     * Handles all incoming commands at once.
+     * {@inheritDoc}
      */
-    private void handleCommands(@Nonnull String messageContent) {
-        JSONParser parser = new JSONParser();
+    @Override
+    public void exceptionCaught(@Nonnull ChannelHandlerContext ctx, @Nonnull Throwable cause) throws Exception {
+        this.plugin.getLogger().log(Level.WARNING, "Long-poll request failed: " + cause.getMessage());
+        this.plugin.getMetricRegistry().counter("longpoll.failures").increment();
 
-        try {
-            JSONArray commands = (JSONArray) parser.parse(messageContent);
+        ctx.close();
+        this.schedulePollRequest();
+    }
 
-            for (Object obj : commands) {
-                JSONObject command = (JSONObject) obj;
-                JSONArray commandTemplates = (JSONArray) command.get("commands");
+    /**
+     * Handles all incoming messages at once.
+     *
+     * Each message may either represent a command batch (identified by its lack of a type or the
+     * type {@code commands}) or a catalog change notification (identified by the type {@code
+     * catalog}) which carries the identifiers of all modified categories. Unknown message types are
+     * silently ignored in order to allow the API to introduce new types without breaking older
+     * plugin versions.
+     *
+     * Messages are decoded directly from the response buffer in order to avoid materializing the
+     * response body as an intermediary string.
+     */
+    private void handleMessages(@Nonnull ByteBuf content) {
+        Set<Long> categoryIds = new HashSet<>();
 
-                UUID identifier = UUID.fromString((String) command.get("uuid"));
-                String name = (String) command.get("name");
-                boolean requiresPlayer = command.containsKey("requiresPlayer") && (boolean) command.get("requiresPlayer");
-                Player player = Bukkit.getPlayer(identifier);
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteBufInputStream(content), StandardCharsets.UTF_8))) {
+            reader.beginArray();
 
-                List<CommandTemplate> commandList = new ArrayList<>();
+            while (reader.hasNext()) {
+                String type = MESSAGE_TYPE_COMMANDS;
+                UUID identifier = null;
+                String name = null;
+                boolean requiresPlayer = false;
+                List<String> commandTemplates = new ArrayList<>();
+                List<Long> messageCategoryIds = new ArrayList<>();
 
-                for (Object cmdObj : commandTemplates) {
-                    if (player != null) {
-                        commandList.add(new CommandTemplate(player, (String) cmdObj));
-                    } else {
-                        commandList.add(new CommandTemplate(identifier, name, (String) cmdObj));
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "type":
+                            type = reader.nextString();
+                            break;
+                        case "uuid":
+                            identifier = UUID.fromString(reader.nextString());
+                            break;
+                        case "name":
+                            name = reader.nextString();
+                            break;
+                        case "requiresPlayer":
+                            requiresPlayer = reader.nextBoolean();
+                            break;
+                        case "commands":
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                commandTemplates.add(reader.nextString());
+                            }
+                            reader.endArray();
+                            break;
+                        case "categories":
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                messageCategoryIds.add(reader.nextLong());
+                            }
+                            reader.endArray();
+                            break;
+                        default:
+                            reader.skipValue();
                     }
                 }
+                reader.endObject();
 
-                if (!requiresPlayer || player != null) {
-                    commandList.forEach(CommandTemplate::execute);
-                } else {
-                    try (Connection connection = this.plugin.getDataSource().getConnection()) {
-                        connection.setAutoCommit(false);
-
-                        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO command_queue (template, profileId) VALUES (?, ?)")) {
-                            for (CommandTemplate template : commandList) {
-                                stmt.setString(1, template.getCommandTemplate());
-                                stmt.setString(2, identifier.toString());
-                                stmt.addBatch();
-                            }
-
-                            stmt.executeBatch();
+                switch (type) {
+                    case MESSAGE_TYPE_COMMANDS:
+                        if (identifier == null || name == null) {
+                            throw new IOException("Incomplete command: Expected uuid and name");
                         }
 
-                        connection.commit();
-                    } catch (SQLException ex) {
-                        this.plugin.getLogger().log(Level.SEVERE, "Could not store queued commands for player " + name + " (UUID " + identifier + "): " + ex.getMessage(), ex);
-                    }
+                        this.handleCommands(identifier, name, requiresPlayer, commandTemplates);
+                        break;
+                    case MESSAGE_TYPE_CATALOG:
+                        categoryIds.addAll(messageCategoryIds);
+                        break;
+                    default:
+                        this.plugin.getLogger().fine("Ignoring unknown long-poll message of type \"" + type + "\"");
                 }
             }
-        } catch (ParseException | ClassCastException ex) {
+
+            reader.endArray();
+        } catch (IOException | IllegalStateException | IllegalArgumentException ex) {
             this.plugin.getLogger().log(Level.WARNING, "Received an invalid response from the MinePay API: " + ex.getMessage(), ex);
         }
+
+        // notifications are merged across the entire response in order to fetch every affected
+        // category only once
+        if (!categoryIds.isEmpty()) {
+            this.plugin.refreshCatalog(categoryIds);
+        }
+    }
+
+    /**
+     * Executes or queues a batch of commands for a certain player.
+     *
+     * Since the Bukkit API may only be accessed from the server thread, player lookups and command
+     * execution are passed to the server thread while commands for offline players are written
+     * to the queue on a separate thread.
+     *
+     * @param identifier       a player identifier.
+     * @param name             a player name.
+     * @param requiresPlayer   true if the player needs to be online for the commands to execute.
+     * @param commandTemplates a list of command templates.
+     */
+    @SuppressWarnings("deprecation")
+    private void handleCommands(@Nonnull UUID identifier, @Nonnull String name, boolean requiresPlayer, @Nonnull List<String> commandTemplates) {
+        this.pendingCommands.addAndGet(commandTemplates.size());
+
+        this.plugin.getTickScheduler().submit(TickScheduler.Priority.NORMAL, () -> {
+            this.pendingCommands.addAndGet(-commandTemplates.size());
+
+            Player player = Bukkit.getPlayer(identifier);
+            List<CommandTemplate> commandList = new ArrayList<>(commandTemplates.size());
+
+            for (String commandTemplate : commandTemplates) {
+                if (player != null) {
+                    commandList.add(new CommandTemplate(player, commandTemplate));
+                } else {
+                    commandList.add(new CommandTemplate(identifier, name, commandTemplate));
+                }
+            }
+
+            if (!requiresPlayer || player != null) {
+                long startTime = System.nanoTime();
+                commandList.forEach(CommandTemplate::execute);
+
+                this.plugin.getMetricRegistry().histogram("commands.dispatch").recordSince(startTime);
+                this.plugin.getMetricRegistry().counter("commands.executed").add(commandList.size());
+                return;
+            }
+
+            Bukkit.getScheduler().scheduleAsyncDelayedTask(this.plugin, () -> {
+                try (Connection connection = this.plugin.getDataSource().getConnection()) {
+                    connection.setAutoCommit(false);
+
+                    try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO command_queue (template, profileId) VALUES (?, ?)")) {
+                        for (CommandTemplate template : commandList) {
+                            stmt.setString(1, template.getCommandTemplate());
+                            stmt.setString(2, identifier.toString());
+                            stmt.addBatch();
+                        }
+
+                        stmt.executeBatch();
+                    }
+
+                    connection.commit();
+                    this.plugin.getMetricRegistry().counter("commands.queued").add(commandList.size());
+                } catch (SQLException ex) {
+                    this.plugin.getLogger().log(Level.SEVERE, "Could not store queued commands for player " + name + " (UUID " + identifier + "): " + ex.getMessage(), ex);
+                }
+            });
+        });
     }
 
     /**
@@ -176,18 +299,45 @@ public class CommandLongPollTask extends SimpleChannelInboundHandler<FullHttpRes
 
     /**
      * Initiates a new poll request.
+     *
+     * The connection is established asynchronously since this method is also invoked from within
+     * the event loop once a previous request has been answered.
      */
     private void initiatePollRequest() {
-        Channel channel = this.bootstrap.connect("api.minepay.net", 443).syncUninterruptibly().channel();
+        if (this.workerGroup.isShuttingDown()) {
+            return;
+        }
+
+        this.bootstrap.connect("api.minepay.net", 443).addListener((ChannelFutureListener) (future) -> {
+            if (!future.isSuccess()) {
+                this.plugin.getLogger().log(Level.WARNING, "Could not connect to long-poll endpoint: " + future.cause().getMessage());
+                this.plugin.getMetricRegistry().counter("longpoll.failures").increment();
+                this.schedulePollRequest();
+                return;
+            }
+
+            HttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/v1/bidi/longpoll");
+            request.headers().set(HttpHeaders.Names.HOST, "api.minepay.net");
+            request.headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+            request.headers().set(HttpHeaders.Names.ACCEPT_ENCODING, HttpHeaders.Values.GZIP);
+            request.headers().set(HttpHeaders.Names.ACCEPT_CHARSET, "UTF-8");
+            request.headers().set("X-ServerId", this.plugin.getConfiguration().getServerId());
 
-        HttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/v1/bidi/longpoll");
-        request.headers().set(HttpHeaders.Names.HOST, "api.minepay.net");
-        request.headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
-        request.headers().set(HttpHeaders.Names.ACCEPT_ENCODING, HttpHeaders.Values.GZIP);
-        request.headers().set(HttpHeaders.Names.ACCEPT_CHARSET, "UTF-8");
-        request.headers().set("X-ServerId", this.plugin.getConfiguration().getServerId());
+            this.requestTime = System.nanoTime();
+            this.plugin.getMetricRegistry().counter("longpoll.requests").increment();
+            future.channel().writeAndFlush(request);
+        });
+    }
+
+    /**
+     * Schedules a new poll request after a failed attempt.
+     */
+    private void schedulePollRequest() {
+        if (this.workerGroup.isShuttingDown()) {
+            return;
+        }
 
-        channel.writeAndFlush(request);
+        this.workerGroup.schedule(this::initiatePollRequest, RETRY_DELAY, TimeUnit.SECONDS);
     }
 
     /**
@@ -0,0 +1,248 @@
+package com.minepay.plugin.bukkit.task;
+
+import com.minepay.plugin.bukkit.MinePayPlugin;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Watches the server thread for lag spikes and samples its stack while a spike is in progress.
+ *
+ * The server thread reports a heartbeat every tick by executing this task. A separate thread
+ * sleeps until the heartbeat is overdue by more than the configured threshold and starts sampling
+ * the server thread in fixed intervals until the next heartbeat arrives. Samples are aggregated
+ * into a folded-stack profile (one line per unique stack followed by its sample count) which is
+ * written to the plugin data folder and may be rendered using common flame graph tooling.
+ *
+ * Since the watchdog thread remains asleep while ticks complete in time and the amount of samples
+ * per spike is bounded, its overhead is negligible.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class LagWatchdog implements Runnable {
+    public static final String PROFILE_DIRECTORY_NAME = "profiles";
+    public static final int MAXIMUM_PROFILES = 20;
+    public static final int MAXIMUM_SAMPLES = 1000;
+    private static final DateTimeFormatter PROFILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private final MinePayPlugin plugin;
+    private final Thread serverThread;
+    private final long threshold;
+    private final long sampleInterval;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private volatile long lastHeartbeat = System.nanoTime();
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Constructs a new watchdog.
+     *
+     * @param plugin         a plugin instance.
+     * @param serverThread   the server thread.
+     * @param threshold      the tick duration after which a tick is considered a spike (in
+     *                       milliseconds).
+     * @param sampleInterval the interval between two samples (in milliseconds).
+     */
+    public LagWatchdog(@Nonnull MinePayPlugin plugin, @Nonnull Thread serverThread, @Nonnegative long threshold, @Nonnegative long sampleInterval) {
+        this.plugin = plugin;
+        this.serverThread = serverThread;
+        this.threshold = TimeUnit.MILLISECONDS.toNanos(threshold);
+        this.sampleInterval = TimeUnit.MILLISECONDS.toNanos(Math.max(1, sampleInterval));
+    }
+
+    /**
+     * Reports a heartbeat.
+     *
+     * <strong>Note:</strong> This method must be invoked from the server thread once per tick.
+     */
+    @Override
+    public void run() {
+        this.lastHeartbeat = System.nanoTime();
+    }
+
+    /**
+     * Starts the watchdog thread.
+     */
+    public synchronized void start() {
+        if (this.thread != null) {
+            return;
+        }
+
+        this.running = true;
+        this.lastHeartbeat = System.nanoTime();
+
+        this.thread = new Thread(this::watch, "MinePay Lag Watchdog");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops the watchdog thread and waits for it to exit.
+     */
+    public synchronized void shutdown() {
+        if (this.thread == null) {
+            return;
+        }
+
+        this.running = false;
+        this.thread.interrupt();
+
+        try {
+            this.thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.thread = null;
+    }
+
+    /**
+     * Waits for overdue heartbeats until the watchdog is shut down.
+     */
+    private void watch() {
+        try {
+            while (this.running) {
+                long heartbeat = this.lastHeartbeat;
+                long delay = heartbeat + this.threshold - System.nanoTime();
+
+                if (delay > 0) {
+                    TimeUnit.NANOSECONDS.sleep(Math.max(delay, this.sampleInterval));
+                    continue;
+                }
+
+                this.profile(heartbeat);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Samples the server thread until the next heartbeat arrives.
+     *
+     * @param heartbeat the overdue heartbeat.
+     * @throws InterruptedException when the watchdog is interrupted.
+     */
+    private void profile(long heartbeat) throws InterruptedException {
+        Map<String, Integer> stacks = new HashMap<>();
+        StringBuilder builder = new StringBuilder();
+        int samples = 0;
+
+        while (this.running && this.lastHeartbeat == heartbeat) {
+            if (samples < MAXIMUM_SAMPLES) {
+                ThreadInfo info = this.threadBean.getThreadInfo(this.serverThread.getId(), Integer.MAX_VALUE);
+
+                if (info != null) {
+                    StackTraceElement[] stackTrace = info.getStackTrace();
+                    builder.setLength(0);
+
+                    // folded stacks are listed from the outermost to the innermost frame
+                    for (int i = stackTrace.length - 1; i >= 0; --i) {
+                        if (builder.length() != 0) {
+                            builder.append(';');
+                        }
+
+                        builder.append(stackTrace[i].getClassName()).append('.').append(stackTrace[i].getMethodName());
+                    }
+
+                    stacks.merge(builder.toString(), 1, Integer::sum);
+                    ++samples;
+                }
+            }
+
+            TimeUnit.NANOSECONDS.sleep(this.sampleInterval);
+        }
+
+        if (!this.running) {
+            return;
+        }
+
+        long duration = this.lastHeartbeat - heartbeat;
+
+        this.plugin.getMetricRegistry().counter("watchdog.spikes").increment();
+        this.plugin.getMetricRegistry().counter("watchdog.samples").add(samples);
+        this.plugin.getMetricRegistry().histogram("watchdog.spike-duration").record(TimeUnit.NANOSECONDS.toMicros(duration));
+
+        if (stacks.isEmpty()) {
+            return;
+        }
+
+        try {
+            Path file = this.writeProfile(stacks);
+            this.plugin.getLogger().warning("Detected a lag spike of " + TimeUnit.NANOSECONDS.toMillis(duration) + " ms (" + samples + " samples) - A profile has been written to " + file);
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.WARNING, "Could not write lag spike profile: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Writes a folded-stack profile to the data folder and discards the oldest profiles once the
+     * retention limit has been exceeded.
+     *
+     * @param stacks a map of folded stacks and their respective sample counts.
+     * @return the profile file.
+     *
+     * @throws IOException when writing the profile fails.
+     */
+    @Nonnull
+    private Path writeProfile(@Nonnull Map<String, Integer> stacks) throws IOException {
+        Path directory = this.plugin.getDataFolder().toPath().resolve(PROFILE_DIRECTORY_NAME);
+        Files.createDirectories(directory);
+
+        String name = "spike-" + PROFILE_NAME_FORMAT.format(LocalDateTime.now());
+        Path file = directory.resolve(name + ".folded");
+
+        // existing profiles are never overwritten since multiple spikes may occur within the
+        // same millisecond (for instance when the clock is adjusted)
+        for (int sequence = 1; ; ++sequence) {
+            try {
+                Files.createFile(file);
+                break;
+            } catch (FileAlreadyExistsException ex) {
+                file = directory.resolve(name + "-" + sequence + ".folded");
+            }
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Integer> entry : stacks.entrySet()) {
+                writer.write(entry.getKey());
+                writer.write(' ');
+                writer.write(Integer.toString(entry.getValue()));
+                writer.newLine();
+            }
+        }
+
+        List<Path> profiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "spike-*.folded")) {
+            stream.forEach(profiles::add);
+        }
+
+        // profile names sort chronologically due to their timestamp format
+        Collections.sort(profiles);
+
+        for (int i = 0; i < profiles.size() - MAXIMUM_PROFILES; ++i) {
+            Files.deleteIfExists(profiles.get(i));
+        }
+
+        return file;
+    }
+}
@@ -1,31 +1,41 @@
 package com.minepay.plugin.bukkit.task;
 
+import com.google.gson.stream.JsonReader;
+
 import com.minepay.plugin.bukkit.MinePayPlugin;
+import com.minepay.plugin.bukkit.storefront.CatalogIndex;
 import com.minepay.plugin.bukkit.storefront.Category;
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.LinkedList;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * Periodically fetches an updates set of known packages available in the server store.
  * This data is used as part of the buy menu.
  *
+ * Since full refreshes are comparatively expensive, the API may additionally notify the plugin
+ * about changes to specific categories through the long-poll channel in which case only the
+ * affected categories are fetched again (see {@link #refresh(Collection)}).
+ *
  * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
  */
 @ThreadSafe
@@ -34,7 +44,9 @@ public class PackageTask implements Runnable {
     private static final String PACKAGES_ENDPOINT_URL = "https://api.minepay.net/v1/store/%s/category/%d";
     private final MinePayPlugin plugin;
     private final String storeName;
+    private final AtomicLong version = new AtomicLong();
     private AtomicReference<List<Category>> categories = new AtomicReference<>();
+    private AtomicReference<CatalogIndex> index = new AtomicReference<>();
 
     public PackageTask(@Nonnull MinePayPlugin plugin, @Nonnull String storeName) {
         this.plugin = plugin;
@@ -51,6 +63,27 @@ public class PackageTask implements Runnable {
         return this.categories.get();
     }
 
+    /**
+     * Retrieves the search index for the current set of categories.
+     *
+     * @return an index or, if no categories have been fetched yet, null.
+     */
+    @Nullable
+    public CatalogIndex getIndex() {
+        return this.index.get();
+    }
+
+    /**
+     * Retrieves the version of the current set of categories.
+     * This value is incremented every time a new set of categories has been fetched.
+     *
+     * @return a version.
+     */
+    @Nonnegative
+    public long getVersion() {
+        return this.version.get();
+    }
+
     /**
      * Fetches a single category and its packages from the servers.
      *
@@ -58,43 +91,97 @@ public class PackageTask implements Runnable {
      * @return a category.
      *
      * @throws IllegalStateException when an invalid response is received.
-     * @throws IOException           when an error occurs while fetching data.
-     * @throws ParseException        when parsing the retrieved data fails.
+     * @throws IOException           when an error occurs while fetching or decoding data.
      */
     @Nonnull
-    private Category fetchCategory(@Nonnegative long categoryId) throws IllegalStateException, IOException, ParseException {
-        JSONParser parser = new JSONParser();
+    private Category fetchCategory(@Nonnegative long categoryId) throws IllegalStateException, IOException {
         HttpURLConnection connection = (HttpURLConnection) new URL(String.format(PACKAGES_ENDPOINT_URL, this.storeName, categoryId)).openConnection();
 
-        int responseCode = connection.getResponseCode();
+        int responseCode = this.plugin.getMetricRegistry().endpoint("catalog.category").execute(connection, null);
         if (responseCode != 200) {
             if (responseCode >= 500) {
                 throw new IllegalStateException("The MinePay servers are currently unavailable");
+            } else if (responseCode == 404) {
+                throw new CategoryNotFoundException(categoryId);
             } else {
                 throw new IllegalStateException("Expected response code 200 but received " + responseCode);
             }
         } else {
             try (InputStream inputStream = connection.getInputStream()) {
-                try (InputStreamReader reader = new InputStreamReader(inputStream)) {
-                    JSONObject object = (JSONObject) parser.parse(reader);
-
-                    return new Category(object);
+                try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                    return Category.decode(reader);
                 }
             }
         }
     }
 
+    /**
+     * Publishes a new set of categories along with its search index.
+     *
+     * @param categories a list of categories.
+     */
+    private void publish(@Nonnull List<Category> categories) {
+        // the index is built on this thread before the new catalog is published in
+        // order to keep searches off the main thread entirely
+        CatalogIndex index = CatalogIndex.build(this.version.get() + 1, categories);
+
+        this.categories.set(categories);
+        this.index.set(index);
+        this.version.incrementAndGet();
+    }
+
+    /**
+     * Fetches the specified categories again and replaces their previous versions within the
+     * current catalog. Categories which are unknown to the plugin are appended while categories
+     * which no longer exist are removed.
+     *
+     * <strong>Note:</strong> This method performs blocking I/O and must not be called from the
+     * server thread.
+     *
+     * @param categoryIds a set of category identifiers.
+     */
+    public synchronized void refresh(@Nonnull Collection<Long> categoryIds) {
+        List<Category> current = this.categories.get();
+
+        // without a base catalog there is nothing to patch and we'll have to wait for the
+        // initial full refresh to complete instead
+        if (current == null) {
+            return;
+        }
+
+        Map<Long, Category> categories = new LinkedHashMap<>();
+        current.forEach((c) -> categories.put(c.getId(), c));
+
+        Set<Long> removed = new HashSet<>();
+        boolean modified = false;
+
+        for (long categoryId : categoryIds) {
+            try {
+                categories.put(categoryId, this.fetchCategory(categoryId));
+                modified = true;
+            } catch (CategoryNotFoundException ex) {
+                removed.add(categoryId);
+            } catch (IllegalStateException | IOException ex) {
+                this.plugin.getLogger().log(Level.WARNING, "Could not refresh category #" + categoryId + ": " + ex.getMessage());
+            }
+        }
+
+        modified |= categories.keySet().removeAll(removed);
+
+        if (modified) {
+            this.publish(new ArrayList<>(categories.values()));
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public void run() {
-        JSONParser parser = new JSONParser();
-
+    public synchronized void run() {
         try {
             HttpURLConnection connection = (HttpURLConnection) new URL(String.format(CATEGORIES_ENDPOINT_URL, this.storeName)).openConnection();
 
-            int responseCode = connection.getResponseCode();
+            int responseCode = this.plugin.getMetricRegistry().endpoint("catalog.categories").execute(connection, null);
             if (responseCode != 200) {
                 if (responseCode >= 400 && responseCode < 500) {
                     this.plugin.getLogger().severe("Could not fetch categories: Expected response code 200 but received " + responseCode);
@@ -102,28 +189,50 @@ public class PackageTask implements Runnable {
                     this.plugin.getLogger().warning("Could not fetch categories: The MinePay servers are currently unavailable");
                 }
             } else {
-                List<Category> categories = new LinkedList<>();
+                List<Long> categoryIds = new ArrayList<>();
+                List<Category> categories = new ArrayList<>();
 
                 try (InputStream inputStream = connection.getInputStream()) {
-                    try (InputStreamReader reader = new InputStreamReader(inputStream)) {
-                        JSONArray array = (JSONArray) parser.parse(reader);
-
-                        for (Object obj : array) {
-                            JSONObject object = (JSONObject) obj;
-
-                            try {
-                                categories.add(this.fetchCategory((long) object.get("id")));
-                            } catch (IllegalArgumentException | ParseException ex) {
-                                this.plugin.getLogger().log(Level.SEVERE, "Could not fetch details for category: " + ex.getMessage());
+                    try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            reader.beginObject();
+                            while (reader.hasNext()) {
+                                if ("id".equals(reader.nextName())) {
+                                    categoryIds.add(reader.nextLong());
+                                } else {
+                                    reader.skipValue();
+                                }
                             }
+                            reader.endObject();
                         }
+                        reader.endArray();
+                    }
+                }
+
+                // the listing is decoded in full before any details are requested in order to
+                // release the connection as early as possible
+                for (long categoryId : categoryIds) {
+                    try {
+                        categories.add(this.fetchCategory(categoryId));
+                    } catch (IllegalStateException | IOException ex) {
+                        this.plugin.getLogger().log(Level.SEVERE, "Could not fetch details for category: " + ex.getMessage());
                     }
                 }
 
-                this.categories.set(categories);
+                this.publish(categories);
             }
-        } catch (IOException | ParseException ex) {
+        } catch (IllegalStateException | IOException ex) {
             this.plugin.getLogger().log(Level.SEVERE, "Could not fetch store categories: " + ex.getMessage(), ex);
         }
     }
+
+    /**
+     * Indicates that a category no longer exists on the remote side.
+     */
+    private static final class CategoryNotFoundException extends IllegalStateException {
+        CategoryNotFoundException(@Nonnegative long categoryId) {
+            super("No such category: #" + categoryId);
+        }
+    }
 }
@@ -0,0 +1,166 @@
+package com.minepay.plugin.bukkit.task;
+
+import com.minepay.plugin.bukkit.telemetry.DataPoint;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Periodically samples the state of the JVM through its platform MXBeans.
+ *
+ * Some MXBeans acquire locks or iterate over all threads and are thus sampled on a separate
+ * thread. The resulting data points are cached until the next sample is taken and may be
+ * retrieved from the server thread at any time.
+ *
+ * The reported metrics include the amount of collections and the accumulated collection time of
+ * every garbage collector, the fraction of time spent collecting garbage and the allocation rate
+ * since the previous sample, the occupancy of every heap memory pool as well as the amount of
+ * threads, loaded classes and the CPU load of the server process. Metrics which are not supported
+ * by the JVM are omitted.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public class RuntimeMetricsTask implements Runnable {
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+    private final ClassLoadingMXBean classLoadingBean = ManagementFactory.getClassLoadingMXBean();
+    private final OperatingSystemMXBean operatingSystemBean = ManagementFactory.getOperatingSystemMXBean();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private volatile List<DataPoint> snapshot = Collections.emptyList();
+    private long lastSampleTime;
+    private long lastCollectionTime;
+    private long lastAllocatedBytes = -1;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void run() {
+        long sampleTime = System.nanoTime();
+        long elapsedMillis = (this.lastSampleTime == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(sampleTime - this.lastSampleTime));
+        List<DataPoint> dataPoints = new ArrayList<>();
+
+        long collectionTime = 0;
+        for (GarbageCollectorMXBean collector : this.collectors) {
+            String name = "jvm.gc." + normalizeName(collector.getName());
+
+            // both values are reported as -1 when the collector does not support them
+            long count = Math.max(0, collector.getCollectionCount());
+            long time = Math.max(0, collector.getCollectionTime());
+
+            dataPoints.add(DataPoint.createLong(name + ".count", count));
+            dataPoints.add(DataPoint.createLong(name + ".time", time));
+            collectionTime += time;
+        }
+
+        long allocatedBytes = this.getAllocatedBytes();
+
+        if (elapsedMillis > 0) {
+            dataPoints.add(DataPoint.createFloat("jvm.gc.time-fraction", Math.max(0, collectionTime - this.lastCollectionTime) / (float) elapsedMillis));
+
+            // threads which terminated since the previous sample take their allocations with them
+            // and thus the delta is clamped in order to avoid reporting negative rates
+            if (allocatedBytes >= 0 && this.lastAllocatedBytes >= 0) {
+                dataPoints.add(DataPoint.createFloat("jvm.allocation-rate", Math.max(0, allocatedBytes - this.lastAllocatedBytes) * 1000.0f / elapsedMillis));
+            }
+        }
+
+        for (MemoryPoolMXBean pool : this.pools) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isValid()) {
+                continue;
+            }
+
+            String name = "jvm.pool." + normalizeName(pool.getName());
+            MemoryUsage usage = pool.getUsage();
+            long capacity = (usage.getMax() < 0 ? usage.getCommitted() : usage.getMax());
+
+            dataPoints.add(DataPoint.createLong(name + ".used", usage.getUsed()));
+
+            if (capacity > 0) {
+                dataPoints.add(DataPoint.createFloat(name + ".occupancy", usage.getUsed() / (float) capacity));
+            }
+        }
+
+        dataPoints.add(DataPoint.createInteger("jvm.threads", this.threadBean.getThreadCount()));
+        dataPoints.add(DataPoint.createInteger("jvm.threads.daemon", this.threadBean.getDaemonThreadCount()));
+        dataPoints.add(DataPoint.createInteger("jvm.threads.peak", this.threadBean.getPeakThreadCount()));
+        dataPoints.add(DataPoint.createInteger("jvm.classes.loaded", this.classLoadingBean.getLoadedClassCount()));
+        dataPoints.add(DataPoint.createLong("jvm.classes.unloaded", this.classLoadingBean.getUnloadedClassCount()));
+
+        if (this.operatingSystemBean instanceof com.sun.management.OperatingSystemMXBean) {
+            double load = ((com.sun.management.OperatingSystemMXBean) this.operatingSystemBean).getProcessCpuLoad();
+
+            if (load >= 0) {
+                dataPoints.add(DataPoint.createFloat("jvm.cpu.process", (float) load));
+            }
+        }
+
+        this.snapshot = Collections.unmodifiableList(dataPoints);
+        this.lastSampleTime = sampleTime;
+        this.lastCollectionTime = collectionTime;
+        this.lastAllocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Retrieves the data points of the most recent sample.
+     *
+     * @return a list of data points or, if no sample has been taken yet, an empty list.
+     */
+    @Nonnull
+    public List<DataPoint> getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Retrieves the overall amount of memory allocated by all live threads.
+     *
+     * @return an amount of bytes or, if allocation tracking is not supported by the JVM, -1.
+     */
+    private long getAllocatedBytes() {
+        if (!(this.threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) this.threadBean;
+
+        if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+
+        long allocatedBytes = 0;
+        for (long threadBytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+            // threads which terminated while being queried are reported as -1
+            if (threadBytes > 0) {
+                allocatedBytes += threadBytes;
+            }
+        }
+
+        return allocatedBytes;
+    }
+
+    /**
+     * Converts an MXBean name (such as "G1 Young Generation") into a metric name component.
+     *
+     * @param name an MXBean name.
+     * @return a metric name component.
+     */
+    @Nonnull
+    private static String normalizeName(@Nonnull String name) {
+        return name.toLowerCase(Locale.ENGLISH).replaceAll("[^a-z0-9]+", "-");
+    }
+}
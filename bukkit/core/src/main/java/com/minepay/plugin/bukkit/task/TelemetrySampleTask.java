@@ -0,0 +1,40 @@
+package com.minepay.plugin.bukkit.task;
+
+import com.minepay.plugin.bukkit.telemetry.DataPoint;
+import com.minepay.plugin.bukkit.telemetry.TelemetryHistory;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Periodically records the current telemetry data points into the local history.
+ *
+ * Samples are kept locally regardless of whether telemetry submission is enabled since they are
+ * never transmitted to the MinePay servers.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class TelemetrySampleTask implements Runnable {
+    private final TelemetryTask telemetryTask;
+    private final TelemetryHistory history;
+
+    public TelemetrySampleTask(@Nonnull TelemetryTask telemetryTask, @Nonnull TelemetryHistory history) {
+        this.telemetryTask = telemetryTask;
+        this.history = history;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        long timestamp = System.currentTimeMillis();
+
+        for (DataPoint dataPoint : this.telemetryTask.collect()) {
+            float value = dataPoint.floatValue();
+
+            if (!Float.isNaN(value)) {
+                this.history.record(dataPoint.getName(), timestamp, value);
+            }
+        }
+    }
+}
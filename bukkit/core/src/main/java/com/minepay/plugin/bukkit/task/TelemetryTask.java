@@ -3,31 +3,46 @@ package com.minepay.plugin.bukkit.task;
 import com.minepay.plugin.bukkit.MinePayPlugin;
 import com.minepay.plugin.bukkit.telemetry.DataPoint;
 import com.minepay.plugin.bukkit.telemetry.Submission;
-
-import org.bukkit.Bukkit;
+import com.minepay.plugin.bukkit.telemetry.SubmissionEncoder;
+import com.minepay.plugin.bukkit.telemetry.TelemetrySpool;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 /**
  * Submits telemetry data to the MinePay servers for statistical purposes.
  *
+ * Data points are collected on the server thread and buffered until they are flushed on a separate
+ * thread. Submissions which cannot be delivered due to connectivity issues are spooled to disk and
+ * replayed once the servers become available again.
+ *
  * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
  */
 public class TelemetryTask implements Runnable {
     public static final String TELEMETRY_ENDPOINT_URL = "https://api.minepay.net/v1/telemetry";
+    public static final String SPOOL_FILE_NAME = "telemetry.spool";
+    public static final int MAXIMUM_PENDING_SUBMISSIONS = 1024;
+    public static final int CONNECT_TIMEOUT = 5000;
+    public static final int READ_TIMEOUT = 10000;
     private final MinePayPlugin plugin;
+    private final BlockingQueue<Submission> pending = new LinkedBlockingQueue<>(MAXIMUM_PENDING_SUBMISSIONS);
+    private final SubmissionEncoder encoder = new SubmissionEncoder();
+    private final TelemetrySpool spool;
     private Submission submission;
 
     public TelemetryTask(@Nonnull MinePayPlugin plugin) {
         this.plugin = plugin;
+        this.spool = new TelemetrySpool(plugin.getDataFolder().toPath().resolve(SPOOL_FILE_NAME), () -> plugin.getConfiguration().getTelemetrySpoolCapacity());
     }
 
     /**
@@ -41,55 +56,188 @@ public class TelemetryTask implements Runnable {
     }
 
     /**
-     * {@inheritDoc}
+     * Retrieves the amount of submissions which await their upload.
+     *
+     * @return an amount of submissions.
      */
-    @Override
-    @SuppressWarnings("deprecation") // Bukkit idiotism
-    public void run() {
+    @Nonnegative
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Collects the current set of data points.
+     *
+     * <strong>Note:</strong> This method must be invoked from the server thread.
+     *
+     * @return a submission.
+     */
+    @Nonnull
+    public Submission collect() {
         Submission.Builder builder = Submission.builder();
 
         builder.add(DataPoint.createLong("ram-free", Runtime.getRuntime().freeMemory()));
         builder.add(DataPoint.createLong("ram-max", Runtime.getRuntime().maxMemory()));
         builder.add(DataPoint.createLong("ram-total", Runtime.getRuntime().totalMemory()));
         builder.add(DataPoint.createInteger("players-current", this.plugin.getBukkitBoilerplate().getOnlinePlayers().size()));
-        builder.add(DataPoint.createFloat("tps", this.plugin.getTickAverage()));
+        builder.add(DataPoint.createFloat("tps", this.plugin.getTickAverage(TickAverageTask.Window.ONE_MINUTE)));
+        builder.add(DataPoint.createFloat("tps-5m", this.plugin.getTickAverage(TickAverageTask.Window.FIVE_MINUTES)));
+        builder.add(DataPoint.createFloat("tps-15m", this.plugin.getTickAverage(TickAverageTask.Window.FIFTEEN_MINUTES)));
+        this.plugin.getRuntimeMetrics().getSnapshot().forEach(builder::add);
+
+        this.plugin.getMetricRegistry().collect(builder);
 
-        Submission submission = builder.build();
+        return builder.build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        Submission submission = this.collect();
         this.submission = submission;
 
-        Bukkit.getServer().getScheduler().scheduleAsyncDelayedTask(this.plugin, () -> this.submit(submission));
+        // when the buffer is full, the oldest submission is sacrificed in favor of the most
+        // recent data
+        while (!this.pending.offer(submission)) {
+            this.pending.poll();
+        }
+    }
+
+    /**
+     * Submits all buffered submissions in order and replays previously spooled submissions once
+     * the servers are reachable.
+     *
+     * <strong>Note:</strong> This method performs blocking I/O and must not be called from the
+     * server thread.
+     */
+    public void flush() {
+        List<Submission> submissions = new ArrayList<>();
+        this.pending.drainTo(submissions);
+
+        try {
+            for (int i = 0; i < submissions.size(); ++i) {
+                byte[] submission = this.encode(submissions.get(i));
+
+                if (!this.submit(submission)) {
+                    // the remaining submissions are spooled right away since the servers are
+                    // unlikely to become available within the same flush
+                    this.spool.append(submission);
+
+                    for (int j = i + 1; j < submissions.size(); ++j) {
+                        this.spool.append(this.encode(submissions.get(j)));
+                    }
+
+                    return;
+                }
+            }
+
+            this.replay();
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "Could not access telemetry spool: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Writes all buffered submissions to the spool in order to deliver them at a later time.
+     *
+     * <strong>Note:</strong> This method performs blocking I/O and should not be called from the
+     * server thread unless the plugin is being disabled.
+     */
+    public void spool() {
+        List<Submission> submissions = new ArrayList<>();
+        this.pending.drainTo(submissions);
+
+        if (submissions.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (Submission submission : submissions) {
+                this.spool.append(this.encode(submission));
+            }
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "Could not spool telemetry data: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Discards all buffered and spooled submissions.
+     *
+     * <strong>Note:</strong> This method performs blocking I/O and should not be called from the
+     * server thread unless the plugin is being disabled.
+     */
+    public void discard() {
+        this.pending.clear();
+
+        try {
+            this.spool.clear();
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "Could not clear telemetry spool: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Replays all spooled submissions in order and stops at the first submission which cannot be
+     * delivered.
+     *
+     * @throws IOException when accessing the spool fails.
+     */
+    private void replay() throws IOException {
+        if (this.spool.isEmpty()) {
+            return;
+        }
+
+        this.spool.replay(this::submit);
     }
 
     /**
-     * Submits a set of data points to the server.
+     * Encodes a single submission.
      *
-     * @param submission a set of data points.
+     * @param submission a submission.
+     * @return an encoded submission.
      */
-    public void submit(@Nonnull Submission submission) {
+    @Nonnull
+    private synchronized byte[] encode(@Nonnull Submission submission) {
+        this.encoder.reset();
+        this.encoder.writeSubmission(submission);
+        return this.encoder.toByteArray();
+    }
+
+    /**
+     * Submits an encoded submission to the server.
+     *
+     * @param submission an encoded submission.
+     * @return true if the submission has been processed (or was rejected permanently), false if it
+     * is to be retried at a later time.
+     */
+    private boolean submit(@Nonnull byte[] submission) {
         try {
             HttpURLConnection connection = (HttpURLConnection) (new URL(TELEMETRY_ENDPOINT_URL)).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
             connection.setRequestMethod("POST");
             connection.setRequestProperty("Content-Type", "application/json;Charset=UTF-8");
             connection.setRequestProperty("User-Agent", "MinePay Bukkit Plugin (+https://www.minepay.com)");
             connection.setRequestProperty("X-ServerId", this.plugin.getConfiguration().getServerId());
-            connection.setDoOutput(true);
-
-            try (OutputStream outputStream = connection.getOutputStream()) {
-                outputStream.write(submission.toEncodedObject().toJSONString().getBytes(StandardCharsets.UTF_8));
-            }
 
-            int responseCode = connection.getResponseCode();
+            int responseCode = this.plugin.getMetricRegistry().endpoint("telemetry").execute(connection, submission);
             if (responseCode >= 200 && responseCode < 400) {
-                return;
+                return true;
             }
 
             if (responseCode >= 400 && responseCode < 500) {
+                // client errors will not resolve themselves by retrying the same submission
                 this.plugin.getLogger().severe("Could not push telemetry data: Expected response code 200 but received " + responseCode);
-            } else if (responseCode >= 500) {
-                this.plugin.getLogger().warning("Could not push telemetry data: The MinePay servers are currently unavailable");
+                return true;
             }
+
+            this.plugin.getLogger().warning("Could not push telemetry data: The MinePay servers are currently unavailable");
+            return false;
         } catch (IOException ex) {
-            this.plugin.getLogger().log(Level.SEVERE, "Could not push telemetry data: " + ex.getMessage(), ex);
+            this.plugin.getLogger().log(Level.WARNING, "Could not push telemetry data: " + ex.getMessage());
+            return false;
         }
     }
 }
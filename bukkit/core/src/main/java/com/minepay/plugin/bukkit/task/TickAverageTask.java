@@ -2,37 +2,56 @@ package com.minepay.plugin.bukkit.task;
 
 import com.minepay.plugin.bukkit.boilerplate.CraftBukkitBoilerplate;
 
-import java.time.Duration;
-import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 /**
  * Calculates the average of ticks processed per second on this server.
  *
+ * Every execution produces a sample of the tick rate since the previous execution which is folded
+ * into exponentially weighted moving averages over multiple windows. Longer windows thus reflect
+ * sustained lag while short spikes only affect the most recent sample.
+ *
  * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
  */
 public class TickAverageTask implements Runnable {
     private final TickCounterTask counterTask;
     private final CraftBukkitBoilerplate craftBukkitBoilerplate;
+    private final float[] averages = new float[Window.values().length];
     private int lastTickCount = 0;
-    private float average = 20.0f;
-    private Instant lastCalculation;
+    private long lastCalculation;
 
     public TickAverageTask(@Nullable TickCounterTask counterTask, @Nullable CraftBukkitBoilerplate craftBukkitBoilerplate) {
         this.counterTask = counterTask;
         this.craftBukkitBoilerplate = craftBukkitBoilerplate;
+
+        for (int i = 0; i < this.averages.length; ++i) {
+            this.averages[i] = 20.0f;
+        }
     }
 
     /**
-     * Retrieves the average amount of ticks processed per second within the sample period.
+     * Retrieves the average amount of ticks processed per second over the last minute.
      *
      * @return an average.
      */
     @Nonnegative
     public float getAverage() {
-        return this.average;
+        return this.getAverage(Window.ONE_MINUTE);
+    }
+
+    /**
+     * Retrieves the average amount of ticks processed per second within a certain window.
+     *
+     * @param window a window.
+     * @return an average.
+     */
+    @Nonnegative
+    public float getAverage(@Nonnull Window window) {
+        return this.averages[window.ordinal()];
     }
 
     /**
@@ -44,19 +63,78 @@ public class TickAverageTask implements Runnable {
         // is available by the core plugin class
         @SuppressWarnings("ConstantConditions")
         int newCount = (this.craftBukkitBoilerplate != null ? this.craftBukkitBoilerplate.getTickCount() : this.counterTask.getTickCount());
-        Instant newCalculation = Instant.now();
+        long newCalculation = System.nanoTime();
+
+        if (this.lastCalculation != 0 && newCalculation != this.lastCalculation) {
+            double elapsed = (newCalculation - this.lastCalculation) / (double) TimeUnit.SECONDS.toNanos(1);
+            float sample = (float) ((newCount - this.lastTickCount) / elapsed);
 
-        if (this.lastCalculation != null) {
-            int difference = newCount - this.lastTickCount;
-            Duration duration = Duration.between(this.lastCalculation, newCalculation);
+            for (Window window : Window.values()) {
+                if (window.getDuration() == 0) {
+                    this.averages[window.ordinal()] = sample;
+                    continue;
+                }
 
-            // Note: We are currently reducing the TPS accuracy down to only include two digits
-            // after the decimal point since everything beyond that point is irrelevant information
-            // from the user standpoint
-            this.average = Math.round(difference / (float) duration.toMillis() * 100000f) / 100f;
+                // the weight of a sample depends on the time it covers in order to keep the
+                // averages accurate even when executions are delayed by lag
+                float alpha = (float) (1 - Math.exp(-elapsed / window.getDuration()));
+                this.averages[window.ordinal()] += (sample - this.averages[window.ordinal()]) * alpha;
+            }
         }
 
         this.lastTickCount = newCount;
         this.lastCalculation = newCalculation;
     }
+
+    /**
+     * Discards the tick count and timestamp of the previous calculation in order to prevent the
+     * time in which the task was not scheduled from being folded into the averages as a single
+     * sample.
+     */
+    public void reset() {
+        this.lastTickCount = 0;
+        this.lastCalculation = 0;
+    }
+
+    /**
+     * Represents the windows over which the tick rate is averaged.
+     */
+    public enum Window {
+
+        /**
+         * The tick rate since the previous calculation (roughly one second).
+         */
+        SAMPLE(0),
+
+        /**
+         * The average tick rate over the last minute.
+         */
+        ONE_MINUTE(60),
+
+        /**
+         * The average tick rate over the last five minutes.
+         */
+        FIVE_MINUTES(300),
+
+        /**
+         * The average tick rate over the last fifteen minutes.
+         */
+        FIFTEEN_MINUTES(900);
+
+        private final long duration;
+
+        Window(@Nonnegative long duration) {
+            this.duration = duration;
+        }
+
+        /**
+         * Retrieves the duration of this window.
+         *
+         * @return a duration in seconds.
+         */
+        @Nonnegative
+        public long getDuration() {
+            return this.duration;
+        }
+    }
 }
@@ -1,22 +1,48 @@
 package com.minepay.plugin.bukkit.task;
 
 import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
 
 /**
  * Keeps track of all ticks that have been processed by this server since the plugin has been
  * loaded.
  *
+ * Since no direct access to the server internals is available when this task is in use, the
+ * interval between two consecutive executions is reported to the tick tracker as an
+ * approximation of the tick duration.
+ *
  * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
  */
 public class TickCounterTask implements Runnable {
+    private final TickTracker tracker;
     private int counter;
+    private long lastExecution;
+
+    public TickCounterTask(@Nonnull TickTracker tracker) {
+        this.tracker = tracker;
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
     public void run() {
+        long now = System.nanoTime();
+
+        if (this.lastExecution != 0) {
+            this.tracker.record(now - this.lastExecution);
+        }
+
         ++this.counter;
+        this.lastExecution = now;
+    }
+
+    /**
+     * Discards the timestamp of the previous execution in order to prevent the time in which the
+     * task was not scheduled from being reported as a tick.
+     */
+    public void reset() {
+        this.lastExecution = 0;
     }
 
     /**
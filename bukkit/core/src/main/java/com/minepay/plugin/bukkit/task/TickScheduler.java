@@ -0,0 +1,208 @@
+package com.minepay.plugin.bukkit.task;
+
+import com.minepay.plugin.bukkit.MinePayPlugin;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Executes work on the server thread while respecting a per-tick time budget.
+ *
+ * Tasks may be submitted from any thread and are executed on the server thread in order of their
+ * priority when this task runs (once per tick):
+ *
+ * <ul>
+ * <li>{@link Priority#HIGH} tasks are executed within the next tick regardless of the budget.</li>
+ * <li>{@link Priority#NORMAL} tasks are executed until the budget of the tick has been exhausted
+ * and are otherwise carried over to the following tick.</li>
+ * <li>{@link Priority#DEFERRABLE} tasks additionally wait while the duration of the most recently
+ * completed tick exceeds the configured overload threshold.</li>
+ * </ul>
+ *
+ * Tasks which have been postponed for longer than {@link #MAXIMUM_DELAY} ticks are executed
+ * regardless of the budget in order to prevent starvation. A task which is already pending is not
+ * queued a second time. The time each task spends waiting for its execution is recorded in
+ * microseconds.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class TickScheduler implements Runnable {
+    public static final int MAXIMUM_DELAY = 600;
+    private static final float TICK_PERIOD = 50;
+    private final MinePayPlugin plugin;
+    private final TickTracker tracker;
+    private final Queue<Entry> highQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Entry> normalQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Entry> deferrableQueue = new ConcurrentLinkedQueue<>();
+    private final Set<Runnable> pending = ConcurrentHashMap.newKeySet();
+    private volatile long tick;
+
+    public TickScheduler(@Nonnull MinePayPlugin plugin, @Nonnull TickTracker tracker) {
+        this.plugin = plugin;
+        this.tracker = tracker;
+    }
+
+    /**
+     * Submits a task for execution on the server thread.
+     *
+     * @param priority a priority.
+     * @param task     a task.
+     */
+    public void submit(@Nonnull Priority priority, @Nonnull Runnable task) {
+        if (!this.pending.add(task)) {
+            return;
+        }
+
+        Entry entry = new Entry(task, this.tick, System.nanoTime());
+
+        switch (priority) {
+            case HIGH:
+                this.highQueue.add(entry);
+                break;
+            case NORMAL:
+                this.normalQueue.add(entry);
+                break;
+            case DEFERRABLE:
+                this.deferrableQueue.add(entry);
+                break;
+        }
+    }
+
+    /**
+     * Retrieves the amount of tasks which are currently waiting for their execution.
+     *
+     * @return an amount of tasks.
+     */
+    @Nonnegative
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(this.plugin.getConfiguration().getSchedulerTickBudget());
+        boolean overloaded = this.getLoad() > this.plugin.getConfiguration().getSchedulerOverloadThreshold();
+        long overdueTick = this.tick - MAXIMUM_DELAY;
+
+        // tasks which are submitted while draining the high priority queue are left for the next
+        // tick as tasks which keep re-submitting themselves would otherwise stall the server
+        for (int i = this.highQueue.size(); i > 0; --i) {
+            this.execute(this.highQueue.poll());
+        }
+
+        this.drain(this.normalQueue, deadline, overdueTick);
+
+        if (overloaded) {
+            // the budget is ignored for overdue tasks only
+            this.drain(this.deferrableQueue, startTime, overdueTick);
+        } else {
+            this.drain(this.deferrableQueue, deadline, overdueTick);
+        }
+
+        ++this.tick;
+    }
+
+    /**
+     * Estimates the load of the most recently completed tick.
+     *
+     * When exact tick durations are unavailable, the tracker reports the interval between two
+     * ticks which includes the time the server idles until the next tick is due. Only the portion
+     * which exceeds the tick period is considered in this case since the interval never drops
+     * below the ideal tick length and would otherwise indicate an overload on every tick.
+     *
+     * @return a duration in milliseconds.
+     */
+    private float getLoad() {
+        float duration = this.tracker.getCurrent();
+
+        if (!this.tracker.isExact()) {
+            duration -= TICK_PERIOD;
+        }
+
+        return duration;
+    }
+
+    /**
+     * Executes tasks from a queue until the deadline has passed and all overdue tasks have been
+     * executed.
+     *
+     * @param queue       a queue.
+     * @param deadline    a deadline as returned by {@link System#nanoTime()}.
+     * @param overdueTick the tick at or before which tasks are considered overdue.
+     */
+    private void drain(@Nonnull Queue<Entry> queue, long deadline, long overdueTick) {
+        Entry entry;
+
+        while ((entry = queue.peek()) != null) {
+            if (System.nanoTime() - deadline >= 0 && entry.tick > overdueTick) {
+                return;
+            }
+
+            queue.poll();
+            this.execute(entry);
+        }
+    }
+
+    /**
+     * Executes a single task.
+     *
+     * @param entry a queue entry.
+     */
+    private void execute(@Nonnull Entry entry) {
+        this.pending.remove(entry.task);
+        this.plugin.getMetricRegistry().histogram("scheduler.delay").recordSince(entry.time);
+
+        try {
+            entry.task.run();
+        } catch (RuntimeException ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "Scheduled task generated an exception: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Provides a list of task priorities.
+     */
+    public enum Priority {
+
+        /**
+         * Work which is immediately visible to players (such as responses to their actions).
+         */
+        HIGH,
+
+        /**
+         * Work which may be postponed by a few ticks without negative effects.
+         */
+        NORMAL,
+
+        /**
+         * Work which may be postponed until the server has recovered from an overload.
+         */
+        DEFERRABLE
+    }
+
+    /**
+     * Represents a pending task along with the tick and time at which it has been submitted.
+     */
+    private static final class Entry {
+        private final Runnable task;
+        private final long tick;
+        private final long time;
+
+        private Entry(@Nonnull Runnable task, long tick, long time) {
+            this.task = task;
+            this.tick = tick;
+            this.time = time;
+        }
+    }
+}
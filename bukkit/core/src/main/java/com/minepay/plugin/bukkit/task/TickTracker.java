@@ -0,0 +1,179 @@
+package com.minepay.plugin.bukkit.task;
+
+import com.minepay.plugin.bukkit.boilerplate.CraftBukkitBoilerplate;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Keeps track of the time it takes the server to process each tick (also known as MSPT).
+ *
+ * When a CraftBukkit integration which supports tick durations is available, the exact duration
+ * of every tick is retrieved from the server itself. Otherwise {@link TickCounterTask} reports
+ * the interval between two consecutive ticks which includes the time the server spends idling
+ * and thus never drops below 50 milliseconds.
+ *
+ * Durations are retained for the last {@link #WINDOW_SIZE} ticks while their percentiles are
+ * re-calculated whenever this task is executed.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@NotThreadSafe
+public class TickTracker implements Runnable {
+    public static final int WINDOW_SIZE = 1200;
+    private static final int RETAINED_TICKS = 100;
+    private final CraftBukkitBoilerplate craftBukkitBoilerplate;
+    private final long[] durations = new long[WINDOW_SIZE];
+    private final long[] sortedDurations = new long[WINDOW_SIZE];
+    private int position;
+    private int size;
+    private int lastTick = -1;
+    private long latest;
+    private long median;
+    private long percentile95;
+    private long maximum;
+
+    public TickTracker(@Nullable CraftBukkitBoilerplate craftBukkitBoilerplate) {
+        this.craftBukkitBoilerplate = (craftBukkitBoilerplate != null && craftBukkitBoilerplate.supportsTickDurations() ? craftBukkitBoilerplate : null);
+    }
+
+    /**
+     * Evaluates whether the exact duration of each tick is retrieved from the server. Otherwise
+     * the tracker relies on {@link TickCounterTask} to report the interval between two ticks.
+     *
+     * @return true if exact durations are available, false otherwise.
+     */
+    public boolean isExact() {
+        return this.craftBukkitBoilerplate != null;
+    }
+
+    /**
+     * Records the duration of a single tick.
+     *
+     * @param duration a duration in nanoseconds.
+     */
+    public void record(@Nonnegative long duration) {
+        this.durations[this.position] = duration;
+        this.position = (this.position + 1) % WINDOW_SIZE;
+        this.size = Math.min(WINDOW_SIZE, this.size + 1);
+        this.latest = duration;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        if (this.craftBukkitBoilerplate != null) {
+            this.poll();
+        }
+
+        if (this.size == 0) {
+            return;
+        }
+
+        System.arraycopy(this.durations, 0, this.sortedDurations, 0, this.size);
+        Arrays.sort(this.sortedDurations, 0, this.size);
+
+        this.median = this.sortedDurations[(this.size - 1) / 2];
+        this.percentile95 = this.sortedDurations[(int) Math.ceil(this.size * 0.95) - 1];
+        this.maximum = this.sortedDurations[this.size - 1];
+    }
+
+    /**
+     * Retrieves the durations of all ticks which have been completed since the last poll.
+     */
+    private void poll() {
+        // the tick which is currently being processed has not been completed yet and is thus
+        // skipped until the next poll
+        int currentTick = this.craftBukkitBoilerplate.getTickCount() - 1;
+        int firstTick = Math.max(this.lastTick + 1, currentTick - RETAINED_TICKS + 1);
+
+        for (int tick = Math.max(0, firstTick); tick <= currentTick; ++tick) {
+            long duration = this.craftBukkitBoilerplate.getTickDuration(tick);
+
+            if (duration >= 0) {
+                this.record(duration);
+            }
+        }
+
+        this.lastTick = currentTick;
+    }
+
+    /**
+     * Retrieves the duration of the most recently recorded tick.
+     *
+     * @return a duration in milliseconds.
+     */
+    @Nonnegative
+    public float getLatest() {
+        return toMillis(this.latest);
+    }
+
+    /**
+     * Retrieves the duration of the most recently completed tick without waiting for the next
+     * poll.
+     *
+     * @return a duration in milliseconds.
+     */
+    @Nonnegative
+    public float getCurrent() {
+        if (this.craftBukkitBoilerplate != null) {
+            int tick = this.craftBukkitBoilerplate.getTickCount() - 1;
+
+            if (tick >= 0) {
+                long duration = this.craftBukkitBoilerplate.getTickDuration(tick);
+
+                if (duration >= 0) {
+                    return toMillis(duration);
+                }
+            }
+        }
+
+        return toMillis(this.latest);
+    }
+
+    /**
+     * Retrieves the median tick duration within the tracked window.
+     *
+     * @return a duration in milliseconds.
+     */
+    @Nonnegative
+    public float getMedian() {
+        return toMillis(this.median);
+    }
+
+    /**
+     * Retrieves the 95th percentile of tick durations within the tracked window.
+     *
+     * @return a duration in milliseconds.
+     */
+    @Nonnegative
+    public float getPercentile95() {
+        return toMillis(this.percentile95);
+    }
+
+    /**
+     * Retrieves the longest tick duration within the tracked window.
+     *
+     * @return a duration in milliseconds.
+     */
+    @Nonnegative
+    public float getMaximum() {
+        return toMillis(this.maximum);
+    }
+
+    /**
+     * Converts a duration in nanoseconds into fractional milliseconds.
+     *
+     * @param duration a duration in nanoseconds.
+     * @return a duration in milliseconds.
+     */
+    private static float toMillis(@Nonnegative long duration) {
+        return duration / (float) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
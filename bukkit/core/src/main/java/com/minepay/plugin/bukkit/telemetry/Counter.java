@@ -0,0 +1,45 @@
+package com.minepay.plugin.bukkit.telemetry;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Provides a monotonically increasing counter.
+ *
+ * Counters are striped internally and may thus be incremented from many threads at once without
+ * contending on a single memory location.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public final class Counter {
+    private final LongAdder value = new LongAdder();
+
+    /**
+     * Increments the counter by one.
+     */
+    public void increment() {
+        this.value.increment();
+    }
+
+    /**
+     * Increments the counter by an arbitrary amount.
+     *
+     * @param amount an amount.
+     */
+    public void add(@Nonnegative long amount) {
+        this.value.add(amount);
+    }
+
+    /**
+     * Retrieves the current value of this counter.
+     *
+     * @return a value.
+     */
+    @Nonnegative
+    public long get() {
+        return this.value.sum();
+    }
+}
@@ -36,6 +36,24 @@ public class DataPoint {
         return this.name;
     }
 
+    /**
+     * Retrieves the value of this data point as a float.
+     *
+     * @return a value or, if the data point does not carry a numeric value, NaN.
+     */
+    public float floatValue() {
+        return Float.NaN;
+    }
+
+    /**
+     * Encodes this data point using a streaming encoder.
+     *
+     * @param encoder an encoder.
+     */
+    void encode(@Nonnull SubmissionEncoder encoder) {
+        encoder.writeDataPoint(this.name);
+    }
+
     /**
      * Encodes this object into a serializable representation.
      *
@@ -64,6 +82,22 @@ public class DataPoint {
             return this.value;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public float floatValue() {
+            return this.value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void encode(@Nonnull SubmissionEncoder encoder) {
+            encoder.writeDataPoint(this.getName(), this.value);
+        }
+
         @Nonnull
         @Override
         @SuppressWarnings("unchecked")
@@ -89,6 +123,22 @@ public class DataPoint {
             return this.value;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public float floatValue() {
+            return this.value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void encode(@Nonnull SubmissionEncoder encoder) {
+            encoder.writeDataPoint(this.getName(), this.value);
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -117,6 +167,22 @@ public class DataPoint {
             return this.value;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public float floatValue() {
+            return this.value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void encode(@Nonnull SubmissionEncoder encoder) {
+            encoder.writeDataPoint(this.getName(), this.value);
+        }
+
         /**
          * {@inheritDoc}
          */
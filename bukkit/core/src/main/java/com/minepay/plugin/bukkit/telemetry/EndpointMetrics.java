@@ -0,0 +1,127 @@
+package com.minepay.plugin.bukkit.telemetry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Tracks the latency and outcome of requests to a single MinePay API endpoint.
+ *
+ * Latencies are measured from the moment a request is initiated until the response status has
+ * been received and are recorded in microseconds. Outcomes are counted by their status class
+ * while requests which did not produce any response (for instance due to connectivity issues)
+ * are counted as failures.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public final class EndpointMetrics {
+    private final Histogram latency = new Histogram();
+    private final LongAdder[] statusClasses = new LongAdder[6];
+
+    EndpointMetrics() {
+        for (int i = 0; i < this.statusClasses.length; ++i) {
+            this.statusClasses[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Retrieves the latency histogram of this endpoint.
+     *
+     * @return a histogram.
+     */
+    @Nonnull
+    public Histogram getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * Retrieves the amount of responses within a certain status class.
+     *
+     * @param statusClass a status class between 1 and 5 (for instance 2 for 2xx).
+     * @return an amount of responses.
+     */
+    @Nonnegative
+    public long getStatusCount(@Nonnegative int statusClass) {
+        if (statusClass < 1 || statusClass >= this.statusClasses.length) {
+            throw new IllegalArgumentException("Illegal status class: " + statusClass);
+        }
+
+        return this.statusClasses[statusClass].sum();
+    }
+
+    /**
+     * Retrieves the amount of requests which did not produce a response.
+     *
+     * @return an amount of requests.
+     */
+    @Nonnegative
+    public long getFailureCount() {
+        return this.statusClasses[0].sum();
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param startTime    a start time as returned by {@link System#nanoTime()}.
+     * @param responseCode a response code.
+     */
+    public void record(long startTime, int responseCode) {
+        int statusClass = responseCode / 100;
+
+        this.latency.recordSince(startTime);
+        this.statusClasses[(statusClass >= 1 && statusClass <= 5 ? statusClass : 0)].increment();
+    }
+
+    /**
+     * Records a request which did not produce a response.
+     *
+     * @param startTime a start time as returned by {@link System#nanoTime()}.
+     */
+    public void recordFailure(long startTime) {
+        this.latency.recordSince(startTime);
+        this.statusClasses[0].increment();
+    }
+
+    /**
+     * Sends a request (along with an optional body) and records its outcome.
+     *
+     * <strong>Note:</strong> This method performs blocking I/O and must not be called from the
+     * server thread.
+     *
+     * @param connection an unconnected connection.
+     * @param body       a request body or null if no body is to be sent.
+     * @return a response code.
+     *
+     * @throws IOException when the request fails.
+     */
+    public int execute(@Nonnull HttpURLConnection connection, @Nullable byte[] body) throws IOException {
+        long startTime = System.nanoTime();
+        int responseCode;
+
+        try {
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+
+                try (OutputStream outputStream = connection.getOutputStream()) {
+                    outputStream.write(body);
+                }
+            }
+
+            responseCode = connection.getResponseCode();
+        } catch (IOException ex) {
+            this.recordFailure(startTime);
+            throw ex;
+        }
+
+        this.record(startTime, responseCode);
+        return responseCode;
+    }
+}
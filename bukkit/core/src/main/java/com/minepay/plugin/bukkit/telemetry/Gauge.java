@@ -0,0 +1,19 @@
+package com.minepay.plugin.bukkit.telemetry;
+
+/**
+ * Provides a value which is sampled lazily whenever the metrics are collected.
+ *
+ * Gauges are sampled on the server thread and should thus be cheap to evaluate.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@FunctionalInterface
+public interface Gauge {
+
+    /**
+     * Samples the current value.
+     *
+     * @return a value.
+     */
+    float getValue();
+}
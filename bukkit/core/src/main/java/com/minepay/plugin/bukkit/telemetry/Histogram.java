@@ -0,0 +1,180 @@
+package com.minepay.plugin.bukkit.telemetry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Provides a lock-free histogram of non-negative values.
+ *
+ * Values are sorted into log-linear buckets: Every power of two is split into a fixed amount of
+ * linear sub-buckets which bounds the relative error of reported percentiles to roughly three
+ * percent regardless of the magnitude of a value (values below the sub-bucket count are stored
+ * exactly). The bucket array is allocated once and recording a value does not allocate any
+ * memory. Histograms with identical layouts may be merged in order to aggregate multiple sources.
+ *
+ * Latencies are recorded in microseconds by convention.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAXIMUM_EXPONENT = 36;
+    private static final long MAXIMUM_VALUE = (1L << MAXIMUM_EXPONENT) - 1;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAXIMUM_EXPONENT - SUB_BUCKET_BITS + 1);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator maximum = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value.
+     *
+     * Negative values are recorded as zero while values beyond the trackable range (roughly 19
+     * hours in microseconds) are clamped to its upper bound.
+     *
+     * @param value a value.
+     */
+    public void record(long value) {
+        value = Math.min(MAXIMUM_VALUE, Math.max(0, value));
+
+        this.buckets.incrementAndGet(indexOf(value));
+        this.count.increment();
+        this.sum.add(value);
+        this.maximum.accumulate(value);
+    }
+
+    /**
+     * Records the time which has passed since the specified instant in microseconds.
+     *
+     * @param startTime a start time as returned by {@link System#nanoTime()}.
+     */
+    public void recordSince(long startTime) {
+        this.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Adds all values which have been recorded by another histogram to this histogram.
+     *
+     * @param histogram a histogram.
+     */
+    public void merge(@Nonnull Histogram histogram) {
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            long count = histogram.buckets.get(i);
+
+            if (count != 0) {
+                this.buckets.addAndGet(i, count);
+            }
+        }
+
+        this.count.add(histogram.count.sum());
+        this.sum.add(histogram.sum.sum());
+        this.maximum.accumulate(histogram.maximum.get());
+    }
+
+    /**
+     * Retrieves the amount of recorded values.
+     *
+     * @return an amount of values.
+     */
+    @Nonnegative
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Retrieves the average of all recorded values.
+     *
+     * @return an average or, if no values have been recorded, zero.
+     */
+    @Nonnegative
+    public double getMean() {
+        long count = this.count.sum();
+        return (count == 0 ? 0 : (double) this.sum.sum() / count);
+    }
+
+    /**
+     * Retrieves the largest recorded value.
+     *
+     * @return a value or, if no values have been recorded, zero.
+     */
+    @Nonnegative
+    public long getMaximum() {
+        return this.maximum.get();
+    }
+
+    /**
+     * Approximates a percentile of all recorded values.
+     *
+     * @param percentile a percentile between 0 and 1.
+     * @return the highest value which is equivalent to the percentile within the precision of
+     * this histogram or, if no values have been recorded, zero.
+     */
+    @Nonnegative
+    public long getPercentile(double percentile) {
+        long total = this.count.sum();
+
+        if (total == 0) {
+            return 0;
+        }
+
+        // values which are recorded concurrently may not have reached their bucket yet in which
+        // case the search falls through to the maximum
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long maximum = this.maximum.get();
+
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            rank -= this.buckets.get(i);
+
+            if (rank <= 0) {
+                return Math.min(upperBoundOf(i), maximum);
+            }
+        }
+
+        return maximum;
+    }
+
+    /**
+     * Calculates the index of the bucket which stores a certain value.
+     *
+     * @param value a value within the trackable range.
+     * @return a bucket index.
+     */
+    private static int indexOf(@Nonnegative long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+
+        // the value is reduced to its leading sub-bucket bits which lie within [SUB_BUCKET_COUNT,
+        // 2 * SUB_BUCKET_COUNT) and are thus offset by the buckets of all lower exponents
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Calculates the largest value which is stored within a certain bucket.
+     *
+     * @param index a bucket index.
+     * @return a value.
+     */
+    private static long upperBoundOf(@Nonnegative int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long mantissa = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
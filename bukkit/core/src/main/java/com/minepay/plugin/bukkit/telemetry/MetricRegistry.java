@@ -0,0 +1,147 @@
+package com.minepay.plugin.bukkit.telemetry;
+
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Provides a central registry of the metrics which are reported by the plugin internals.
+ *
+ * Metrics are identified by a dot separated name which is prefixed with the subsystem they
+ * originate from (for instance {@code menu.clicks}). Counters and histograms are created on first
+ * access while gauges are registered explicitly and only evaluated once the metrics are
+ * collected. Requests to the MinePay API are tracked per endpoint (see {@link EndpointMetrics}).
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public class MetricRegistry {
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Retrieves or creates a counter.
+     *
+     * @param name a metric name.
+     * @return a counter.
+     */
+    @Nonnull
+    public Counter counter(@Nonnull String name) {
+        return this.counters.computeIfAbsent(name, (n) -> new Counter());
+    }
+
+    /**
+     * Registers a gauge and replaces any gauge which has previously been registered under the
+     * same name.
+     *
+     * @param name  a metric name.
+     * @param gauge a gauge.
+     */
+    public void gauge(@Nonnull String name, @Nonnull Gauge gauge) {
+        this.gauges.put(name, gauge);
+    }
+
+    /**
+     * Retrieves or creates a histogram.
+     *
+     * @param name a metric name.
+     * @return a histogram.
+     */
+    @Nonnull
+    public Histogram histogram(@Nonnull String name) {
+        return this.histograms.computeIfAbsent(name, (n) -> new Histogram());
+    }
+
+    /**
+     * Retrieves or creates the metrics of an API endpoint.
+     *
+     * @param name an endpoint name.
+     * @return a set of endpoint metrics.
+     */
+    @Nonnull
+    public EndpointMetrics endpoint(@Nonnull String name) {
+        return this.endpoints.computeIfAbsent(name, (n) -> new EndpointMetrics());
+    }
+
+    /**
+     * Retrieves a sorted snapshot of all counters.
+     *
+     * @return a map of counters.
+     */
+    @Nonnull
+    public SortedMap<String, Counter> getCounters() {
+        return ImmutableSortedMap.copyOf(this.counters);
+    }
+
+    /**
+     * Retrieves a sorted snapshot of all gauges.
+     *
+     * @return a map of gauges.
+     */
+    @Nonnull
+    public SortedMap<String, Gauge> getGauges() {
+        return ImmutableSortedMap.copyOf(this.gauges);
+    }
+
+    /**
+     * Retrieves a sorted snapshot of all histograms.
+     *
+     * @return a map of histograms.
+     */
+    @Nonnull
+    public SortedMap<String, Histogram> getHistograms() {
+        return ImmutableSortedMap.copyOf(this.histograms);
+    }
+
+    /**
+     * Retrieves a sorted snapshot of all endpoint metrics.
+     *
+     * @return a map of endpoint metrics.
+     */
+    @Nonnull
+    public SortedMap<String, EndpointMetrics> getEndpoints() {
+        return ImmutableSortedMap.copyOf(this.endpoints);
+    }
+
+    /**
+     * Appends the current state of all metrics to a submission.
+     *
+     * Histograms are summarized by their amount of values, their median, their 99th percentile and
+     * their maximum since transmitting their buckets would inflate the submission considerably.
+     * Endpoints additionally report their 99.9th percentile as well as the amount of client
+     * errors, server errors and failed requests.
+     *
+     * <strong>Note:</strong> This method must be invoked from the server thread since gauges may
+     * access the Bukkit API.
+     *
+     * @param builder a submission builder.
+     */
+    public void collect(@Nonnull Submission.Builder builder) {
+        this.counters.forEach((name, counter) -> builder.add(DataPoint.createLong(name, counter.get())));
+        this.gauges.forEach((name, gauge) -> builder.add(DataPoint.createFloat(name, gauge.getValue())));
+        this.histograms.forEach((name, histogram) -> {
+            builder.add(DataPoint.createLong(name + ".count", histogram.getCount()));
+            builder.add(DataPoint.createLong(name + ".p50", histogram.getPercentile(0.5)));
+            builder.add(DataPoint.createLong(name + ".p99", histogram.getPercentile(0.99)));
+            builder.add(DataPoint.createLong(name + ".max", histogram.getMaximum()));
+        });
+        this.endpoints.forEach((name, endpoint) -> {
+            Histogram latency = endpoint.getLatency();
+
+            builder.add(DataPoint.createLong("api." + name + ".count", latency.getCount()));
+            builder.add(DataPoint.createLong("api." + name + ".p50", latency.getPercentile(0.5)));
+            builder.add(DataPoint.createLong("api." + name + ".p99", latency.getPercentile(0.99)));
+            builder.add(DataPoint.createLong("api." + name + ".p999", latency.getPercentile(0.999)));
+            builder.add(DataPoint.createLong("api." + name + ".4xx", endpoint.getStatusCount(4)));
+            builder.add(DataPoint.createLong("api." + name + ".5xx", endpoint.getStatusCount(5)));
+            builder.add(DataPoint.createLong("api." + name + ".failures", endpoint.getFailureCount()));
+        });
+    }
+}
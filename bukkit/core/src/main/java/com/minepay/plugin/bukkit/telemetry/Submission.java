@@ -56,6 +56,18 @@ public final class Submission implements Iterable<DataPoint> {
         return this.dataPoints.iterator();
     }
 
+    /**
+     * Encodes all data points of this submission using a streaming encoder.
+     *
+     * @param encoder an encoder.
+     */
+    void encode(@Nonnull SubmissionEncoder encoder) {
+        // indexed access avoids the allocation of an iterator for every submission
+        for (int i = 0; i < this.dataPoints.size(); ++i) {
+            this.dataPoints.get(i).encode(encoder);
+        }
+    }
+
     /**
      * Converts the object into its serializable form.
      *
@@ -0,0 +1,326 @@
+package com.minepay.plugin.bukkit.telemetry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Encodes telemetry submissions into their JSON representation.
+ *
+ * Contrary to {@link Submission#toEncodedObject()}, this encoder writes directly into a byte
+ * buffer which is re-used between invocations and encodes numeric values without boxing them or
+ * converting them into intermediate strings. Encoding a submission thus does not allocate any
+ * memory once the buffer has grown to an appropriate size.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@NotThreadSafe
+public final class SubmissionEncoder {
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000};
+    private static final int FLOAT_PRECISION = 7;
+    private static final double MAXIMUM_PLAIN_FLOAT = 1e15;
+
+    private byte[] buffer;
+    private int position;
+
+    public SubmissionEncoder() {
+        this(1024);
+    }
+
+    public SubmissionEncoder(@Nonnegative int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * Retrieves the amount of bytes which have been encoded since the last reset.
+     *
+     * @return an amount of bytes.
+     */
+    @Nonnegative
+    public int size() {
+        return this.position;
+    }
+
+    /**
+     * Discards all encoded data while retaining the buffer.
+     */
+    public void reset() {
+        this.position = 0;
+    }
+
+    /**
+     * Writes all encoded data to a stream.
+     *
+     * @param outputStream a stream.
+     * @throws IOException when writing to the stream fails.
+     */
+    public void writeTo(@Nonnull OutputStream outputStream) throws IOException {
+        outputStream.write(this.buffer, 0, this.position);
+    }
+
+    /**
+     * Copies all encoded data into a new array.
+     *
+     * @return an array of bytes.
+     */
+    @Nonnull
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.position);
+    }
+
+    /**
+     * Encodes a single submission.
+     *
+     * The resulting document matches the representation produced by
+     * {@link Submission#toEncodedObject()}.
+     *
+     * @param submission a submission.
+     */
+    public void writeSubmission(@Nonnull Submission submission) {
+        this.writeRaw("{\"datapoints\":[");
+        submission.encode(this);
+        this.writeRaw("]}");
+    }
+
+    /**
+     * Encodes a data point which does not carry a value.
+     *
+     * @param name a name.
+     */
+    void writeDataPoint(@Nonnull String name) {
+        this.beginDataPoint(name);
+        this.writeByte('}');
+    }
+
+    /**
+     * Encodes an integer based data point.
+     *
+     * @param name  a name.
+     * @param value a value.
+     */
+    void writeDataPoint(@Nonnull String name, int value) {
+        this.writeDataPoint(name, (long) value);
+    }
+
+    /**
+     * Encodes a long based data point.
+     *
+     * @param name  a name.
+     * @param value a value.
+     */
+    void writeDataPoint(@Nonnull String name, long value) {
+        this.beginDataPoint(name);
+        this.writeRaw(",\"value\":");
+        this.writeLong(value);
+        this.writeByte('}');
+    }
+
+    /**
+     * Encodes a float based data point.
+     *
+     * @param name  a name.
+     * @param value a value.
+     */
+    void writeDataPoint(@Nonnull String name, float value) {
+        this.beginDataPoint(name);
+        this.writeRaw(",\"value\":");
+        this.writeFloat(value);
+        this.writeByte('}');
+    }
+
+    /**
+     * Writes the opening brace and name of a data point.
+     *
+     * @param name a name.
+     */
+    private void beginDataPoint(@Nonnull String name) {
+        // data points are always written as elements of an array and are thus separated from
+        // their predecessor unless they are the first element
+        if (this.buffer[this.position - 1] != '[') {
+            this.writeByte(',');
+        }
+
+        this.writeRaw("{\"name\":");
+        this.writeString(name);
+    }
+
+    /**
+     * Writes a long value in its decimal representation.
+     *
+     * @param value a value.
+     */
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            this.writeRaw("-9223372036854775808");
+            return;
+        }
+
+        if (value < 0) {
+            this.writeByte('-');
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long remainder = value / 10; remainder != 0; remainder /= 10) {
+            ++digits;
+        }
+
+        this.ensureCapacity(digits);
+
+        int end = this.position + digits;
+        for (int i = end - 1; i >= this.position; --i) {
+            this.buffer[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+
+        this.position = end;
+    }
+
+    /**
+     * Writes a float value in its decimal representation.
+     *
+     * Values are written with up to seven significant digits (which matches the precision of the
+     * type) while trailing zeros are omitted. Since JSON cannot represent non-finite numbers, NaN
+     * and infinite values are written as null.
+     *
+     * @param value a value.
+     */
+    private void writeFloat(float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            this.writeRaw("null");
+            return;
+        }
+
+        double magnitude = Math.abs((double) value);
+
+        // extremely large values are rare enough to fall back to the scientific notation
+        // provided by the JDK
+        if (magnitude >= MAXIMUM_PLAIN_FLOAT) {
+            this.writeRaw(Float.toString(value));
+            return;
+        }
+
+        long integral = (long) magnitude;
+
+        int integralDigits = 0;
+        for (long remainder = integral; remainder != 0; remainder /= 10) {
+            ++integralDigits;
+        }
+
+        int fractionDigits = Math.max(1, FLOAT_PRECISION - integralDigits);
+        long scale = POWERS_OF_TEN[fractionDigits];
+        long fraction = Math.round((magnitude - integral) * scale);
+
+        if (fraction >= scale) {
+            ++integral;
+            fraction -= scale;
+        }
+
+        // trailing zeros are stripped while at least a single fraction digit is retained in
+        // order to keep the value recognizable as a floating point number
+        while (fractionDigits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            --fractionDigits;
+        }
+
+        if (value < 0 && (integral != 0 || fraction != 0)) {
+            this.writeByte('-');
+        }
+
+        this.writeLong(integral);
+        this.writeByte('.');
+        this.ensureCapacity(fractionDigits);
+
+        for (int i = this.position + fractionDigits - 1; i >= this.position; --i) {
+            this.buffer[i] = (byte) ('0' + (fraction % 10));
+            fraction /= 10;
+        }
+
+        this.position += fractionDigits;
+    }
+
+    /**
+     * Writes a quoted and escaped string in UTF-8.
+     *
+     * @param value a string.
+     */
+    private void writeString(@Nonnull String value) {
+        this.writeByte('"');
+
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                this.writeByte('\\');
+                this.writeByte(c);
+            } else if (c < 0x20) {
+                this.writeRaw("\\u00");
+                this.writeByte(HEX_DIGITS[c >> 4]);
+                this.writeByte(HEX_DIGITS[c & 0xF]);
+            } else if (c < 0x80) {
+                this.writeByte(c);
+            } else if (c < 0x800) {
+                this.writeByte(0xC0 | (c >> 6));
+                this.writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+
+                this.writeByte(0xF0 | (codePoint >> 18));
+                this.writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                this.writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                this.writeByte(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogates cannot be represented in UTF-8
+                this.writeByte('?');
+            } else {
+                this.writeByte(0xE0 | (c >> 12));
+                this.writeByte(0x80 | ((c >> 6) & 0x3F));
+                this.writeByte(0x80 | (c & 0x3F));
+            }
+        }
+
+        this.writeByte('"');
+    }
+
+    /**
+     * Writes a string which consists of ASCII characters only and does not require escaping.
+     *
+     * @param value a string.
+     */
+    private void writeRaw(@Nonnull String value) {
+        this.ensureCapacity(value.length());
+
+        for (int i = 0; i < value.length(); ++i) {
+            this.buffer[this.position++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param value a byte.
+     */
+    private void writeByte(int value) {
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = (byte) value;
+    }
+
+    /**
+     * Grows the buffer when it cannot hold the specified amount of additional bytes.
+     *
+     * @param length an amount of bytes.
+     */
+    private void ensureCapacity(@Nonnegative int length) {
+        if (this.position + length <= this.buffer.length) {
+            return;
+        }
+
+        this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + length));
+    }
+}
@@ -0,0 +1,155 @@
+package com.minepay.plugin.bukkit.telemetry;
+
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Keeps a local history of telemetry metrics at multiple resolutions.
+ *
+ * Every metric is backed by one {@link TimeSeries} per {@link Resolution} while the amount of
+ * metrics is bounded as well. The memory consumed by the history thus remains constant regardless
+ * of the server uptime.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public class TelemetryHistory {
+    public static final int MAXIMUM_METRICS = 192;
+    private final Map<String, TimeSeries[]> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Records a sample for a certain metric at the current time.
+     *
+     * @param name  a metric name.
+     * @param value a value.
+     */
+    public void record(@Nonnull String name, float value) {
+        this.record(name, System.currentTimeMillis(), value);
+    }
+
+    /**
+     * Records a sample for a certain metric.
+     *
+     * Samples for previously unknown metrics are silently discarded once the maximum amount of
+     * metrics has been reached.
+     *
+     * @param name      a metric name.
+     * @param timestamp a timestamp (in milliseconds since the epoch).
+     * @param value     a value.
+     */
+    public void record(@Nonnull String name, @Nonnegative long timestamp, float value) {
+        TimeSeries[] series = this.metrics.get(name);
+
+        if (series == null) {
+            if (this.metrics.size() >= MAXIMUM_METRICS) {
+                return;
+            }
+
+            series = this.metrics.computeIfAbsent(name, (n) -> {
+                TimeSeries[] s = new TimeSeries[Resolution.values().length];
+
+                for (Resolution resolution : Resolution.values()) {
+                    s[resolution.ordinal()] = new TimeSeries(resolution.getDuration(), resolution.getCapacity());
+                }
+
+                return s;
+            });
+        }
+
+        for (TimeSeries s : series) {
+            s.record(timestamp, value);
+        }
+    }
+
+    /**
+     * Retrieves the names of all metrics which have been recorded so far.
+     *
+     * @return a sorted set of metric names.
+     */
+    @Nonnull
+    public Set<String> getMetricNames() {
+        return ImmutableSortedSet.copyOf(this.metrics.keySet());
+    }
+
+    /**
+     * Retrieves the series of a certain metric at a certain resolution.
+     *
+     * @param name       a metric name.
+     * @param resolution a resolution.
+     * @return a series or, if no such metric has been recorded, null.
+     */
+    @Nullable
+    public TimeSeries getSeries(@Nonnull String name, @Nonnull Resolution resolution) {
+        TimeSeries[] series = this.metrics.get(name);
+
+        if (series == null) {
+            return null;
+        }
+
+        return series[resolution.ordinal()];
+    }
+
+    /**
+     * Represents the resolutions at which metrics are retained.
+     */
+    public enum Resolution {
+
+        /**
+         * Retains five minutes of per-second samples.
+         */
+        SECOND(TimeUnit.SECONDS.toMillis(1), 300),
+
+        /**
+         * Retains three hours of per-minute samples.
+         */
+        MINUTE(TimeUnit.MINUTES.toMillis(1), 180),
+
+        /**
+         * Retains a week of per-hour samples.
+         */
+        HOUR(TimeUnit.HOURS.toMillis(1), 168);
+
+        private final long duration;
+        private final int capacity;
+
+        Resolution(@Nonnegative long duration, @Nonnegative int capacity) {
+            this.duration = duration;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Resolves a resolution by its name.
+         *
+         * @param name a name.
+         * @return a resolution or, if no such resolution exists, null.
+         */
+        @Nullable
+        public static Resolution byName(@Nonnull String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                return null;
+            }
+        }
+
+        @Nonnegative
+        public long getDuration() {
+            return this.duration;
+        }
+
+        @Nonnegative
+        public int getCapacity() {
+            return this.capacity;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.minepay.plugin.bukkit.telemetry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Stores encoded telemetry submissions on disk while the MinePay servers are unreachable.
+ *
+ * Submissions are stored as length-prefixed records within a single file whose size is bounded. When
+ * the limit is exceeded, the oldest records are discarded first. The limit is re-evaluated on
+ * every append in order to reflect configuration changes.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public class TelemetrySpool {
+    private final Path file;
+    private final LongSupplier capacity;
+    private final Lock replayLock = new ReentrantLock();
+
+    /**
+     * Constructs a new spool.
+     *
+     * @param file     a spool file.
+     * @param capacity a supplier of the maximum size of the spool file (in bytes).
+     */
+    public TelemetrySpool(@Nonnull Path file, @Nonnull LongSupplier capacity) {
+        this.file = file;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Appends a batch to the spool and discards the oldest batches when the capacity is exceeded.
+     *
+     * @param batch an encoded batch.
+     * @throws IOException when reading or writing the spool fails.
+     */
+    public synchronized void append(@Nonnull byte[] batch) throws IOException {
+        long capacity = this.capacity.getAsLong();
+
+        if (batch.length + 4 > capacity) {
+            return;
+        }
+
+        long size = (Files.exists(this.file) ? Files.size(this.file) : 0);
+
+        if (size + batch.length + 4 <= capacity) {
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+                outputStream.writeInt(batch.length);
+                outputStream.write(batch);
+            }
+            return;
+        }
+
+        Deque<byte[]> batches = new ArrayDeque<>(this.read());
+        batches.addLast(batch);
+
+        while (size + batch.length + 4 > capacity && batches.size() > 1) {
+            size -= batches.removeFirst().length + 4;
+        }
+
+        this.write(batches);
+    }
+
+    /**
+     * Retrieves all spooled batches in the order they have been appended.
+     *
+     * @return a list of batches.
+     *
+     * @throws IOException when reading the spool fails.
+     */
+    @Nonnull
+    public synchronized List<byte[]> read() throws IOException {
+        List<byte[]> batches = new ArrayList<>();
+        long capacity = this.capacity.getAsLong();
+
+        if (!Files.exists(this.file)) {
+            return batches;
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+            while (true) {
+                int length;
+
+                try {
+                    length = inputStream.readInt();
+                } catch (EOFException ex) {
+                    break;
+                }
+
+                // truncated records (for instance due to a crash while writing) are discarded
+                // along with everything that follows them
+                if (length < 0 || length > capacity) {
+                    break;
+                }
+
+                byte[] batch = new byte[length];
+                try {
+                    inputStream.readFully(batch);
+                } catch (EOFException ex) {
+                    break;
+                }
+
+                batches.add(batch);
+            }
+        }
+
+        return batches;
+    }
+
+    /**
+     * Passes all spooled submissions to a consumer in order and removes those which have been
+     * accepted. Processing stops at the first submission which is rejected.
+     *
+     * The spool is only locked while its contents are read and rewritten and may thus be
+     * appended to while the consumer performs blocking I/O. Only a single replay is performed at a
+     * time while concurrent invocations return immediately.
+     *
+     * @param consumer a consumer which returns true when a submission has been processed.
+     * @throws IOException when reading or writing the spool fails.
+     */
+    public void replay(@Nonnull Predicate<byte[]> consumer) throws IOException {
+        if (!this.replayLock.tryLock()) {
+            return;
+        }
+
+        try {
+            List<byte[]> submissions = this.read();
+            int delivered = 0;
+
+            while (delivered < submissions.size() && consumer.test(submissions.get(delivered))) {
+                ++delivered;
+            }
+
+            if (delivered != 0) {
+                this.remove(submissions.subList(0, delivered));
+            }
+        } finally {
+            this.replayLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a set of previously read submissions from the head of the spool.
+     *
+     * Submissions which have been evicted by concurrent appends in the meantime are skipped while
+     * submissions which have been appended since are retained.
+     *
+     * @param submissions a set of submissions in the order they have been read.
+     * @throws IOException when reading or writing the spool fails.
+     */
+    private synchronized void remove(@Nonnull List<byte[]> submissions) throws IOException {
+        List<byte[]> current = this.read();
+        int position = 0;
+
+        for (byte[] submission : submissions) {
+            if (position < current.size() && Arrays.equals(current.get(position), submission)) {
+                ++position;
+            } else if (position != 0) {
+                break;
+            }
+        }
+
+        if (position == current.size()) {
+            this.clear();
+        } else if (position != 0) {
+            this.write(current.subList(position, current.size()));
+        }
+    }
+
+    /**
+     * Replaces the contents of the spool.
+     *
+     * @param batches a set of batches.
+     * @throws IOException when writing the spool fails.
+     */
+    public synchronized void write(@Nonnull Iterable<byte[]> batches) throws IOException {
+        Path temporaryFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            for (byte[] batch : batches) {
+                outputStream.writeInt(batch.length);
+                outputStream.write(batch);
+            }
+        }
+
+        Files.move(temporaryFile, this.file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Checks whether any batches are currently spooled.
+     *
+     * @return true if empty, false otherwise.
+     */
+    public synchronized boolean isEmpty() {
+        try {
+            return !Files.exists(this.file) || Files.size(this.file) == 0;
+        } catch (IOException ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Discards all spooled batches.
+     *
+     * @throws IOException when deleting the spool fails.
+     */
+    public synchronized void clear() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+}
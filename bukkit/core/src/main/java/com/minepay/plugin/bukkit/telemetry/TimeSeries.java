@@ -0,0 +1,134 @@
+package com.minepay.plugin.bukkit.telemetry;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Provides a fixed-size ring buffer of aggregated samples at a single resolution.
+ *
+ * Each bucket covers a fixed interval of time and keeps track of the minimum, maximum and average
+ * of all samples which have been recorded within said interval. Buckets are backed by primitive
+ * arrays which are allocated once and re-used as the series wraps around, thus the memory
+ * footprint of a series does not depend on the amount of samples recorded.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@ThreadSafe
+public final class TimeSeries {
+    private final long resolution;
+    private final long[] epochs;
+    private final float[] minimums;
+    private final float[] maximums;
+    private final double[] sums;
+    private final int[] counts;
+
+    /**
+     * Constructs a new series.
+     *
+     * @param resolution the duration covered by a single bucket (in milliseconds).
+     * @param capacity   the amount of buckets to retain.
+     */
+    public TimeSeries(@Nonnegative long resolution, @Nonnegative int capacity) {
+        if (resolution <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Resolution and capacity must be positive");
+        }
+
+        this.resolution = resolution;
+        this.epochs = new long[capacity];
+        this.minimums = new float[capacity];
+        this.maximums = new float[capacity];
+        this.sums = new double[capacity];
+        this.counts = new int[capacity];
+
+        Arrays.fill(this.epochs, -1);
+    }
+
+    /**
+     * Retrieves the duration covered by a single bucket.
+     *
+     * @return a duration in milliseconds.
+     */
+    @Nonnegative
+    public long getResolution() {
+        return this.resolution;
+    }
+
+    /**
+     * Retrieves the maximum amount of buckets retained by this series.
+     *
+     * @return an amount of buckets.
+     */
+    @Nonnegative
+    public int getCapacity() {
+        return this.epochs.length;
+    }
+
+    /**
+     * Records a sample.
+     *
+     * @param timestamp a timestamp (in milliseconds since the epoch).
+     * @param value     a value.
+     */
+    public synchronized void record(@Nonnegative long timestamp, float value) {
+        long epoch = timestamp / this.resolution;
+        int index = (int) (epoch % this.epochs.length);
+
+        // buckets are lazily reset as soon as a sample for a newer interval arrives
+        if (this.epochs[index] != epoch) {
+            this.epochs[index] = epoch;
+            this.minimums[index] = value;
+            this.maximums[index] = value;
+            this.sums[index] = value;
+            this.counts[index] = 1;
+            return;
+        }
+
+        this.minimums[index] = Math.min(this.minimums[index], value);
+        this.maximums[index] = Math.max(this.maximums[index], value);
+        this.sums[index] += value;
+        ++this.counts[index];
+    }
+
+    /**
+     * Passes all buckets which lie within the retained window ending at the specified time to a
+     * visitor in chronological order. Intervals without any samples are skipped.
+     *
+     * @param now     the current time (in milliseconds since the epoch).
+     * @param visitor a visitor.
+     */
+    public synchronized void forEach(@Nonnegative long now, @Nonnull Visitor visitor) {
+        long current = now / this.resolution;
+
+        for (long epoch = current - this.epochs.length + 1; epoch <= current; ++epoch) {
+            if (epoch < 0) {
+                continue;
+            }
+
+            int index = (int) (epoch % this.epochs.length);
+
+            if (this.epochs[index] == epoch) {
+                visitor.accept(epoch * this.resolution, this.minimums[index], this.maximums[index], (float) (this.sums[index] / this.counts[index]));
+            }
+        }
+    }
+
+    /**
+     * Receives the aggregated values of a single bucket.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+
+        /**
+         * Accepts a bucket.
+         *
+         * @param timestamp the beginning of the interval covered by the bucket.
+         * @param minimum   the smallest recorded value.
+         * @param maximum   the largest recorded value.
+         * @param average   the average of all recorded values.
+         */
+        void accept(long timestamp, float minimum, float maximum, float average);
+    }
+}